@@ -0,0 +1,51 @@
+package de.hsb.ms.syn.bench;
+
+import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+
+/**
+ * Benchmark of one block computed by an AudioAlgorithm,
+ * either with fillGenBuffer() or (for Fx algorithms) with fillFXBuffer().
+ * The parameter is unused
+ * @author Marcel
+ *
+ */
+public class AlgorithmBenchmark extends Benchmark {
+
+	/** Algorithm under test */
+	private AudioAlgorithm algorithm;
+
+	/** True if the algorithm is an Fx algorithm */
+	private boolean fx;
+
+	/** Block processed by the algorithm */
+	private float[] buffer;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param algorithm
+	 * @param fx		True to benchmark fillFXBuffer() instead of fillGenBuffer()
+	 */
+	public AlgorithmBenchmark(String name, AudioAlgorithm algorithm, boolean fx) {
+		super(name);
+		this.algorithm = algorithm;
+		this.fx = fx;
+	}
+
+	@Override
+	public void setup(int param) {
+		buffer = new float[EngineConfig.get().getBlockSize()];
+	}
+
+	@Override
+	public float run() {
+		if (fx) {
+			// Feed the Fx algorithm with a constant signal, so that it doesn't decay to silence
+			for (int i = 0; i < buffer.length; i++)
+				buffer[i] = 0.5f;
+			return algorithm.fillFXBuffer(buffer)[0];
+		}
+		return algorithm.fillGenBuffer(buffer)[0];
+	}
+}
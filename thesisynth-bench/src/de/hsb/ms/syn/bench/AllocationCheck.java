@@ -0,0 +1,167 @@
+package de.hsb.ms.syn.bench;
+
+import java.lang.management.ManagementFactory;
+
+import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.audio.engine.RenderPlan;
+import de.hsb.ms.syn.common.audio.fx.LFO;
+import de.hsb.ms.syn.common.audio.fx.TapDelay;
+import de.hsb.ms.syn.common.audio.gen.Sawtooth;
+import de.hsb.ms.syn.common.audio.gen.Sinewave;
+import de.hsb.ms.syn.common.util.Constants;
+
+/**
+ * Allocation regression check of the audio path: after a warmup, rendering a block
+ * of a RenderPlan must not allocate a single byte. Each plan is warmed up, then the bytes
+ * allocated by the current thread (ThreadMXBean.getThreadAllocatedBytes()) are compared
+ * before and after rendering a number of blocks.
+ * The crossfade is checked with a crossfade time that lasts longer than the measurement, on a plan
+ * that is still fading when the measurement ends (the warmup runs on another instance of the same plan).
+ * Exits with status 1 if any plan allocates, so it can guard a build.
+ * Usage: AllocationCheck [blocks]
+ * @author Marcel
+ *
+ */
+public class AllocationCheck {
+
+	/** Number of blocks rendered before measuring */
+	private static final int WARMUP_BLOCKS	= 20000;
+	/** Default number of measured blocks */
+	private static final int MEASURE_BLOCKS	= 10000;
+
+	/** Sink for the rendered samples, so that the work can't be eliminated */
+	private static volatile float sink;
+
+	/**
+	 * Main method
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int blocks = (args.length > 0) ? Integer.parseInt(args[0]) : MEASURE_BLOCKS;
+		EngineConfig.set(new EngineConfig(
+				Integer.getInteger("thesisynth.samplerate", Constants.SAMPLING_RATE),
+				Integer.getInteger("thesisynth.blocksize", Constants.BUFFER_SIZE)));
+		System.out.println("Engine: " + EngineConfig.get());
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("Allocation counting isn't supported by this JVM");
+			System.exit(2);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		boolean failed = false;
+		RenderPlan plan = createMix(20, false);
+		failed |= !check(threads, "CenterNode.mix (20 inputs)", plan, plan, blocks);
+		plan = createMix(4, true);
+		failed |= !check(threads, "FxNode.mix (LFO, 4 inputs)", plan, plan, blocks);
+		plan = createDelay();
+		failed |= !check(threads, "TapDelay", plan, plan, blocks);
+		plan = createShared();
+		failed |= !check(threads, "Shared input", plan, plan, blocks);
+
+		// Fade for longer than the warmup and the measurement
+		EngineConfig config = EngineConfig.get();
+		long fadeSamples = (long) (Math.max(WARMUP_BLOCKS, blocks) + 1) * config.getBlockSize();
+		EngineConfig.set(new EngineConfig(config.getSampleRate(), config.getBlockSize(),
+				(int) (fadeSamples * 1000 / config.getSampleRate() + 1)));
+		RenderPlan fading = createCrossfade();
+		failed |= !check(threads, "Crossfade", createCrossfade(), fading, blocks);
+		if (!fading.isFading()) {
+			System.out.println("Crossfade ended during the measurement, the fading path wasn't checked");
+			failed = true;
+		}
+		EngineConfig.set(config);
+		System.exit(failed ? 1 : 0);
+	}
+
+	/**
+	 * Warm up with a plan, then render another one (or the same one) for the given number of blocks
+	 * and print the allocated bytes
+	 * @param threads
+	 * @param name
+	 * @param warmup	Plan to warm up with
+	 * @param plan		Plan to measure
+	 * @param blocks
+	 * @return	true if no bytes were allocated
+	 */
+	private static boolean check(com.sun.management.ThreadMXBean threads, String name, RenderPlan warmup, RenderPlan plan, int blocks) {
+		long id = Thread.currentThread().getId();
+		float acc = 0;
+		for (int i = 0; i < WARMUP_BLOCKS; i++)
+			acc += warmup.render()[0];
+
+		// Bytes allocated by reading the counter itself
+		long before = threads.getThreadAllocatedBytes(id);
+		long overhead = threads.getThreadAllocatedBytes(id) - before;
+
+		before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < blocks; i++)
+			acc += plan.render()[0];
+		long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+		sink = acc;
+
+		boolean ok = (allocated <= 0);
+		System.out.println(String.format("%-28s %8d blocks %10d bytes  %s", name, blocks, Math.max(allocated, 0), ok ? "OK" : "FAILED"));
+		return ok;
+	}
+
+	/**
+	 * Create a plan mixing the given number of generators, optionally into an LFO
+	 * @param inputs
+	 * @param fx
+	 * @return
+	 */
+	private static RenderPlan createMix(int inputs, boolean fx) {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		int[] ops = new int[inputs];
+		for (int i = 0; i < inputs; i++)
+			ops[i] = builder.addGenerator(new Sinewave(new Scale(Scale.BASE_C + (i % 12), Scale.MODE_MAJ_OCTAVE)));
+		if (fx)
+			builder.addEffect(new LFO(2f, Sinewave.class), ops);
+		else
+			builder.addMix(ops);
+		return builder.build();
+	}
+
+	/**
+	 * Create a plan feeding a generator into a TapDelay
+	 * @return
+	 */
+	private static RenderPlan createDelay() {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		int gen = builder.addGenerator(new Sawtooth(new Scale(Scale.BASE_A, Scale.MODE_MAJ_OCTAVE)));
+		int delay = builder.addEffect(new TapDelay(0.5f, 0.5f, 0.5f), new int[] { gen });
+		builder.addMix(new int[] { delay });
+		return builder.build();
+	}
+
+	/**
+	 * Create a plan with a generator that feeds two mixes
+	 * @return
+	 */
+	private static RenderPlan createShared() {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		int gen = builder.addGenerator(new Sinewave(new Scale(Scale.BASE_A, Scale.MODE_MAJ_OCTAVE)));
+		int other = builder.addGenerator(new Sawtooth(new Scale(Scale.BASE_C, Scale.MODE_MAJ_OCTAVE)));
+		int a = builder.addMix(new int[] { gen, other });
+		int b = builder.addEffect(new LFO(2f, Sinewave.class), new int[] { gen });
+		builder.addMix(new int[] { a, b });
+		return builder.build();
+	}
+
+	/**
+	 * Create a transition plan fading one input in and another one out
+	 * @return
+	 */
+	private static RenderPlan createCrossfade() {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		int in = builder.addGenerator(new Sinewave(new Scale(Scale.BASE_A, Scale.MODE_MAJ_OCTAVE)));
+		int out = builder.addGenerator(new Sawtooth(new Scale(Scale.BASE_C, Scale.MODE_MAJ_OCTAVE)));
+		int kept = builder.addGenerator(new Sinewave(new Scale(Scale.BASE_E, Scale.MODE_MAJ_OCTAVE)));
+		builder.addMix(new int[] { kept, in, out },
+				new int[] { RenderPlan.FADE_NONE, RenderPlan.FADE_IN, RenderPlan.FADE_OUT });
+		return builder.build();
+	}
+}
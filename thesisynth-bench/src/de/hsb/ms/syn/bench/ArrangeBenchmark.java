@@ -0,0 +1,52 @@
+package de.hsb.ms.syn.bench;
+
+import java.util.Random;
+
+import de.hsb.ms.syn.common.audio.engine.AudioGraph;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
+import de.hsb.ms.syn.common.util.Constants;
+
+/**
+ * Benchmark of the arrangement of the whole Node graph (what arrangeAll() does on every change).
+ * The parameter is the number of Nodes on the surface. Every fourth Node is an Fx node
+ * with two inputs, the others are Gen nodes, and all of them are placed at random
+ * (with a fixed seed) on a surface of the synthesizer's size
+ * @author Marcel
+ *
+ */
+public class ArrangeBenchmark extends Benchmark {
+
+	/** Size of the surface the Nodes are placed on */
+	private static final float SURFACE_WIDTH	= 800;
+	private static final float SURFACE_HEIGHT	= 600;
+
+	/** Graph under test */
+	private AudioGraph graph;
+
+	/**
+	 * Constructor
+	 * @param name
+	 */
+	public ArrangeBenchmark(String name) {
+		super(name, 10, 100, 1000, 5000);
+	}
+
+	@Override
+	public void setup(int param) {
+		Random random = new Random(42);
+		graph = new AudioGraph(new AudioNode(AudioNode.KIND_MIX, Constants.CENTERNODE_INPUTS));
+		for (int i = 0; i < param; i++) {
+			AudioNode n = (i % 4 == 0)
+					? new AudioNode(AudioNode.KIND_EFFECT, 2)
+					: new AudioNode(AudioNode.KIND_GENERATOR, 1);
+			n.setPosition((random.nextFloat() - 0.5f) * SURFACE_WIDTH, (random.nextFloat() - 0.5f) * SURFACE_HEIGHT);
+			graph.add(n);
+		}
+	}
+
+	@Override
+	public float run() {
+		graph.arrange();
+		return graph.getCenter().getInputs().size();
+	}
+}
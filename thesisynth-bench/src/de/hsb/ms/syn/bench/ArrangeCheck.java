@@ -0,0 +1,170 @@
+package de.hsb.ms.syn.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.hsb.ms.syn.common.audio.engine.AudioGraph;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
+import de.hsb.ms.syn.common.util.Constants;
+
+/**
+ * Randomized check of AudioGraph.rearrange(): Nodes of a graph are moved at random,
+ * and after each move the connections are compared with those of a twin graph
+ * that is arranged from scratch at the same positions. Whenever rearrange() reports that
+ * nothing has changed, the connections must be identical to those of the fresh arrangement.
+ * Moves are small drags, jumps across the surface and moves onto a coarse grid (which produces
+ * equal distances, so that the ID order of the search is exercised as well).
+ * Exits with status 1 on the first difference.
+ * Usage: ArrangeCheck [rounds] [moves per round]
+ * @author Marcel
+ *
+ */
+public class ArrangeCheck {
+
+	/** Size of the surface the Nodes are placed on */
+	private static final float SURFACE_WIDTH	= 800;
+	private static final float SURFACE_HEIGHT	= 600;
+	/** Spacing of the grid some moves snap to */
+	private static final float GRID				= 40;
+
+	/** Default number of graphs and moves per graph */
+	private static final int ROUNDS	= 200;
+	private static final int MOVES	= 200;
+
+	/** Graph sizes (cycled through) */
+	private static final int[] SIZES = { 3, 8, 20, 60, 200 };
+
+	/**
+	 * Main method
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : ROUNDS;
+		int moves = (args.length > 1) ? Integer.parseInt(args[1]) : MOVES;
+
+		int kept = 0, changed = 0;
+		for (int round = 0; round < rounds; round++) {
+			Random random = new Random(round);
+			int count = SIZES[round % SIZES.length];
+
+			// The twins are created in the same order, so that their IDs are ordered alike
+			List<AudioNode> nodes = new ArrayList<AudioNode>();
+			List<AudioNode> twins = new ArrayList<AudioNode>();
+			AudioGraph graph = createGraph(count, random, nodes);
+			AudioGraph twin = createTwin(nodes, twins);
+			graph.arrange();
+
+			for (int move = 0; move < moves; move++) {
+				int i = random.nextInt(count);
+				AudioNode n = nodes.get(i);
+				float x, y;
+				switch (random.nextInt(3)) {
+				case 0:
+					x = n.getX() + (random.nextFloat() - 0.5f) * 20;
+					y = n.getY() + (random.nextFloat() - 0.5f) * 20;
+					break;
+				case 1:
+					x = (random.nextFloat() - 0.5f) * SURFACE_WIDTH;
+					y = (random.nextFloat() - 0.5f) * SURFACE_HEIGHT;
+					break;
+				default:
+					x = Math.round(n.getX() / GRID) * GRID;
+					y = Math.round(n.getY() / GRID) * GRID;
+					break;
+				}
+				n.setPosition(x, y);
+				twins.get(i).setPosition(x, y);
+
+				boolean result = graph.rearrange(n);
+				twin.arrange();
+				if (result) {
+					changed++;
+				} else {
+					kept++;
+					String difference = compare(graph, twin, nodes, twins);
+					if (difference != null) {
+						System.out.println(String.format("Round %d (%d Nodes), move %d of Node %d: rearrange() kept a stale arrangement (%s)",
+								round, count, move, i, difference));
+						System.exit(1);
+					}
+				}
+			}
+		}
+		System.out.println(String.format("%d moves kept the arrangement, %d changed it: OK", kept, changed));
+	}
+
+	/**
+	 * Create a graph of Gen and Fx nodes at random positions
+	 * @param count
+	 * @param random
+	 * @param nodes	List the AudioNodes are added to, in the order of creation
+	 * @return
+	 */
+	private static AudioGraph createGraph(int count, Random random, List<AudioNode> nodes) {
+		AudioGraph graph = new AudioGraph(new AudioNode(AudioNode.KIND_MIX, Constants.CENTERNODE_INPUTS));
+		for (int i = 0; i < count; i++) {
+			AudioNode n = (i % 3 == 0)
+					? new AudioNode(AudioNode.KIND_EFFECT, 1 + random.nextInt(3))
+					: new AudioNode(AudioNode.KIND_GENERATOR, 1);
+			n.setPosition((random.nextFloat() - 0.5f) * SURFACE_WIDTH, (random.nextFloat() - 0.5f) * SURFACE_HEIGHT);
+			graph.add(n);
+			nodes.add(n);
+		}
+		return graph;
+	}
+
+	/**
+	 * Create a graph of twins of the given AudioNodes (same kinds, inputs and positions)
+	 * @param nodes
+	 * @param twins	List the twins are added to, in the order of the given AudioNodes
+	 * @return
+	 */
+	private static AudioGraph createTwin(List<AudioNode> nodes, List<AudioNode> twins) {
+		AudioGraph graph = new AudioGraph(new AudioNode(AudioNode.KIND_MIX, Constants.CENTERNODE_INPUTS));
+		for (AudioNode n : nodes) {
+			AudioNode t = new AudioNode(n.getKind(), n.getMaxInputs());
+			t.setPosition(n.getX(), n.getY());
+			graph.add(t);
+			twins.add(t);
+		}
+		return graph;
+	}
+
+	/**
+	 * Compare the connections of two twin graphs
+	 * @param graph
+	 * @param twin
+	 * @param nodes
+	 * @param twins
+	 * @return	Description of the first difference, or null if the connections are identical
+	 */
+	private static String compare(AudioGraph graph, AudioGraph twin, List<AudioNode> nodes, List<AudioNode> twins) {
+		if (!sameInputs(graph.getCenter().getInputs(), twin.getCenter().getInputs(), nodes, twins))
+			return "inputs of the center";
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).isArranged() != twins.get(i).isArranged())
+				return "Node " + i + " is " + (nodes.get(i).isArranged() ? "" : "not ") + "connected";
+			if (nodes.get(i).isArranged() && !sameInputs(nodes.get(i).getInputs(), twins.get(i).getInputs(), nodes, twins))
+				return "inputs of Node " + i;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if two lists of inputs consist of twin AudioNodes
+	 * @param a
+	 * @param b
+	 * @param nodes
+	 * @param twins
+	 * @return
+	 */
+	private static boolean sameInputs(List<AudioNode> a, List<AudioNode> b, List<AudioNode> nodes, List<AudioNode> twins) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++)
+			if (nodes.indexOf(a.get(i)) != twins.indexOf(b.get(i)))
+				return false;
+		return true;
+	}
+}
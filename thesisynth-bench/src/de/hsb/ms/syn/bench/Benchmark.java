@@ -0,0 +1,56 @@
+package de.hsb.ms.syn.bench;
+
+/**
+ * Base class for a benchmark run by the BenchmarkRunner.
+ * A benchmark is set up once for each of its parameter values,
+ * after which its operation is invoked repeatedly and timed
+ * @author Marcel
+ *
+ */
+public abstract class Benchmark {
+
+	/** Name of this benchmark */
+	private String name;
+
+	/** Parameter values to run this benchmark with */
+	private int[] params;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param params	Parameter values (for example graph sizes)
+	 */
+	protected Benchmark(String name, int... params) {
+		this.name = name;
+		this.params = (params.length > 0) ? params : new int[] { 0 };
+	}
+
+	/**
+	 * Prepare the state of the benchmark for the given parameter value (not timed)
+	 * @param param
+	 */
+	public abstract void setup(int param);
+
+	/**
+	 * Run one operation of the benchmark (timed).
+	 * The result is consumed by the runner, so that the JIT compiler can't remove the work
+	 * @return
+	 */
+	public abstract float run();
+
+	/**
+	 * Returns the name of this benchmark
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the parameter values to run this benchmark with
+	 * @return
+	 */
+	public int[] getParams() {
+		return params;
+	}
+}
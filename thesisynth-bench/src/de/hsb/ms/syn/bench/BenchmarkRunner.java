@@ -0,0 +1,158 @@
+package de.hsb.ms.syn.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.audio.fx.LFO;
+import de.hsb.ms.syn.common.audio.fx.TapDelay;
+import de.hsb.ms.syn.common.audio.gen.Sawtooth;
+import de.hsb.ms.syn.common.audio.gen.Sinewave;
+import de.hsb.ms.syn.common.audio.gen.Square;
+import de.hsb.ms.syn.common.audio.gen.Triangle;
+import de.hsb.ms.syn.common.util.Constants;
+
+/**
+ * Entry point of the benchmark suite. It runs without a display (and without LibGDX's backends).
+ * Each benchmark is warmed up first, so that the JIT compiler has optimized its code,
+ * and is then measured over a number of fixed-length iterations.
+ * Results are printed as the mean time per operation and its standard deviation.
+ * Usage: BenchmarkRunner [name filter] [warmup iterations] [measurement iterations] [iteration time in ms].
+ * The engine configuration may be set with -Dthesisynth.samplerate=... and -Dthesisynth.blocksize=...
+ * @author Marcel
+ *
+ */
+public class BenchmarkRunner {
+
+	/** Default number of warmup iterations */
+	private static final int WARMUP_ITERATIONS		= 5;
+	/** Default number of measurement iterations */
+	private static final int MEASURE_ITERATIONS		= 10;
+	/** Default duration of an iteration in milliseconds */
+	private static final int ITERATION_TIME			= 200;
+	/** Operations slower than this (in milliseconds) are only run once instead of being warmed up and measured */
+	private static final int MAX_OPERATION_TIME		= 5000;
+
+	/** Sink for the benchmarks' results, so that their work can't be eliminated */
+	private static volatile float sink;
+
+	/**
+	 * Main method
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String filter = (args.length > 0) ? args[0] : "";
+		int warmup = (args.length > 1) ? Integer.parseInt(args[1]) : WARMUP_ITERATIONS;
+		int measure = (args.length > 2) ? Integer.parseInt(args[2]) : MEASURE_ITERATIONS;
+		long time = (args.length > 3) ? Long.parseLong(args[3]) : ITERATION_TIME;
+		EngineConfig.set(new EngineConfig(
+				Integer.getInteger("thesisynth.samplerate", Constants.SAMPLING_RATE),
+				Integer.getInteger("thesisynth.blocksize", Constants.BUFFER_SIZE)));
+		System.out.println("Engine: " + EngineConfig.get());
+
+		System.out.println(String.format("%-28s %8s %14s %12s %10s", "Benchmark", "Param", "ns/op", "+/-", "ops"));
+		for (Benchmark b : createBenchmarks()) {
+			if (!b.getName().contains(filter)) continue;
+			// Parameters grow from left to right, so skip the rest once an operation got too slow
+			boolean tooSlow = false;
+			for (int param : b.getParams()) {
+				if (tooSlow)
+					System.out.println(String.format("%-28s %8d %14s", b.getName(), param, "(skipped)"));
+				else
+					tooSlow = !run(b, param, warmup, measure, time * 1000000L);
+			}
+		}
+	}
+
+	/**
+	 * Create the suite of benchmarks
+	 * @return
+	 */
+	private static List<Benchmark> createBenchmarks() {
+		Scale scale = new Scale(Scale.BASE_A, Scale.MODE_MAJ_OCTAVE);
+		List<Benchmark> list = new ArrayList<Benchmark>();
+
+		list.add(new WaveformBenchmark("AudioUtils.sinewave", WaveformBenchmark.SINEWAVE));
+		list.add(new WaveformBenchmark("AudioUtils.square", WaveformBenchmark.SQUARE));
+		list.add(new WaveformBenchmark("AudioUtils.sawtooth", WaveformBenchmark.SAWTOOTH));
+		list.add(new WaveformBenchmark("AudioUtils.triangle", WaveformBenchmark.TRIANGLE));
+
+		list.add(new AlgorithmBenchmark("Sinewave.fillGenBuffer", new Sinewave(scale), false));
+		list.add(new AlgorithmBenchmark("Square.fillGenBuffer", new Square(scale), false));
+		list.add(new AlgorithmBenchmark("Sawtooth.fillGenBuffer", new Sawtooth(scale), false));
+		list.add(new AlgorithmBenchmark("Triangle.fillGenBuffer", new Triangle(scale), false));
+		list.add(new AlgorithmBenchmark("LFO.fillFXBuffer", new LFO(2f, Sinewave.class), true));
+		list.add(new AlgorithmBenchmark("TapDelay.fillFXBuffer", new TapDelay(0.5f, 0.5f, 0.5f), true));
+
+		list.add(new MixKernelBenchmark("Mix.legacy", MixKernelBenchmark.LEGACY));
+		list.add(new MixKernelBenchmark("Mix.kernels", MixKernelBenchmark.KERNELS));
+		list.add(new MixBenchmark("CenterNode.mix", false));
+		list.add(new MixBenchmark("FxNode.mix", true));
+
+		list.add(new ArrangeBenchmark("AudioGraph.arrange"));
+		return list;
+	}
+
+	/**
+	 * Warm up and measure a benchmark with the given parameter, then print the result
+	 * @param b
+	 * @param param
+	 * @param warmup		Number of warmup iterations
+	 * @param measure		Number of measurement iterations
+	 * @param iterationTime	Duration of each iteration in nanoseconds
+	 * @return	False if a single operation took longer than MAX_OPERATION_TIME
+	 */
+	private static boolean run(Benchmark b, int param, int warmup, int measure, long iterationTime) {
+		b.setup(param);
+
+		// Don't spend hours on pathologically slow operations, a single run tells enough
+		long[] first = iterate(b, 0);
+		if (first[0] > MAX_OPERATION_TIME * 1000000L) {
+			System.out.println(String.format("%-28s %8d %14.1f %12s %10d", b.getName(), param, (double) first[0], "(single run)", 1));
+			return false;
+		}
+
+		for (int i = 0; i < warmup; i++)
+			iterate(b, iterationTime);
+
+		double[] results = new double[measure];
+		long ops = 0;
+		for (int i = 0; i < measure; i++) {
+			long[] r = iterate(b, iterationTime);
+			results[i] = (double) r[0] / r[1];
+			ops += r[1];
+		}
+
+		// Mean and standard deviation of the time per operation
+		double mean = 0;
+		for (double r : results) mean += r;
+		mean /= measure;
+		double variance = 0;
+		for (double r : results) variance += (r - mean) * (r - mean);
+		double deviation = (measure > 1) ? Math.sqrt(variance / (measure - 1)) : 0;
+
+		System.out.println(String.format("%-28s %8d %14.1f %12.1f %10d", b.getName(), param, mean, deviation, ops));
+		return true;
+	}
+
+	/**
+	 * Run the benchmark's operation repeatedly for (at least) the given time
+	 * @param b
+	 * @param iterationTime	Duration in nanoseconds
+	 * @return	Two-item array: the elapsed time in nanoseconds and the number of operations
+	 */
+	private static long[] iterate(Benchmark b, long iterationTime) {
+		float acc = 0;
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			acc += b.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationTime);
+		sink = acc;
+		return new long[] { elapsed, ops };
+	}
+}
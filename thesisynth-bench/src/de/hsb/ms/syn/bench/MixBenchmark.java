@@ -0,0 +1,50 @@
+package de.hsb.ms.syn.bench;
+
+import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.engine.RenderPlan;
+import de.hsb.ms.syn.common.audio.fx.LFO;
+import de.hsb.ms.syn.common.audio.gen.Sinewave;
+
+/**
+ * Benchmark of one block of a mixing operation, as performed by the Center node
+ * (plain mixing) or by an Fx node (mixing, then applying an LFO).
+ * The parameter is the number of mixed inputs, each of which is a Sinewave generator
+ * @author Marcel
+ *
+ */
+public class MixBenchmark extends Benchmark {
+
+	/** True to mix into an Fx operation instead of a Center node mix */
+	private boolean fx;
+
+	/** Plan under test */
+	private RenderPlan plan;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param fx	True to mix into an Fx operation
+	 */
+	public MixBenchmark(String name, boolean fx) {
+		super(name, 1, 4, 20);
+		this.fx = fx;
+	}
+
+	@Override
+	public void setup(int param) {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		int[] inputs = new int[param];
+		for (int i = 0; i < param; i++)
+			inputs[i] = builder.addGenerator(new Sinewave(new Scale(Scale.BASE_C + (i % 12), Scale.MODE_MAJ_OCTAVE)));
+		if (fx)
+			builder.addEffect(new LFO(2f, Sinewave.class), inputs);
+		else
+			builder.addMix(inputs);
+		plan = builder.build();
+	}
+
+	@Override
+	public float run() {
+		return plan.render()[0];
+	}
+}
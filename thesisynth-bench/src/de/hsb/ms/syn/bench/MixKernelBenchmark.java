@@ -0,0 +1,67 @@
+package de.hsb.ms.syn.bench;
+
+import java.util.Random;
+
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.util.DspKernels;
+
+/**
+ * Benchmark of mixing one block of inputs, comparing the per-sample loop the Nodes used to mix with
+ * (clamping each sum with a branch) with DspKernels.addClamped(), as used by RenderPlan.
+ * Both produce the same samples. The parameter is the number of mixed inputs
+ * @author Marcel
+ *
+ */
+public class MixKernelBenchmark extends Benchmark {
+
+	/** Mixing implementations */
+	public static final int LEGACY		= 0;
+	public static final int KERNELS		= 1;
+
+	/** Implementation under test */
+	private int implementation;
+
+	/** Inputs and mix buffer */
+	private float[][] inputs;
+	private float[] out;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param implementation	LEGACY or KERNELS
+	 */
+	public MixKernelBenchmark(String name, int implementation) {
+		super(name, 2, 4, 20);
+		this.implementation = implementation;
+	}
+
+	@Override
+	public void setup(int param) {
+		int length = EngineConfig.get().getBlockSize();
+		Random random = new Random(42);
+		inputs = new float[param][length];
+		for (float[] in : inputs)
+			for (int i = 0; i < length; i++)
+				in[i] = random.nextFloat() - 0.5f;
+		out = new float[length];
+	}
+
+	@Override
+	public float run() {
+		System.arraycopy(inputs[0], 0, out, 0, out.length);
+		if (implementation == LEGACY) {
+			for (int j = 1; j < inputs.length; j++) {
+				float[] addition = inputs[j];
+				for (int i = 0; i < out.length; i++) {
+					// Normalize
+					float sum = out[i] + addition[i];
+					out[i] = (sum > 1) ? 1 : ((sum < -1) ? -1 : sum);
+				}
+			}
+		} else {
+			for (int j = 1; j < inputs.length; j++)
+				DspKernels.addClamped(out, inputs[j], out.length);
+		}
+		return out[0];
+	}
+}
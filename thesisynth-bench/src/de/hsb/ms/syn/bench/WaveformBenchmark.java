@@ -0,0 +1,59 @@
+package de.hsb.ms.syn.bench;
+
+import de.hsb.ms.syn.common.util.AudioUtils;
+
+/**
+ * Benchmark of the waveform generators in AudioUtils.
+ * The parameter is the frequency of the generated period in Hz
+ * @author Marcel
+ *
+ */
+public class WaveformBenchmark extends Benchmark {
+
+	/* Waveform constants */
+
+	public static final int SINEWAVE	= 0;
+	public static final int SQUARE		= 1;
+	public static final int SAWTOOTH	= 2;
+	public static final int TRIANGLE	= 3;
+
+	/** Waveform generated by this benchmark */
+	private int waveform;
+
+	/** Frequency of the generated period */
+	private float freq;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param waveform	Waveform constant
+	 */
+	public WaveformBenchmark(String name, int waveform) {
+		super(name, 55, 440, 3520);
+		this.waveform = waveform;
+	}
+
+	@Override
+	public void setup(int param) {
+		this.freq = param;
+	}
+
+	@Override
+	public float run() {
+		float[] period;
+		switch (waveform) {
+		case SQUARE:
+			period = AudioUtils.square(freq, 1.0f);
+			break;
+		case SAWTOOTH:
+			period = AudioUtils.sawtooth(freq, 1.0f);
+			break;
+		case TRIANGLE:
+			period = AudioUtils.triangle(freq, 1.0f);
+			break;
+		default:
+			period = AudioUtils.sinewave(freq, 1.0f);
+		}
+		return period[period.length / 3];
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Benchmark suite for the hot paths of the audio engine, which runs without a display,
+ * a check that rendering a block doesn't allocate once it is warmed up (AllocationCheck)
+ * and a randomized check of the incremental re-arrangement of dragged Nodes (ArrangeCheck).
+ */
+package de.hsb.ms.syn.bench;
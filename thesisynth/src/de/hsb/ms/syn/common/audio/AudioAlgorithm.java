@@ -3,6 +3,7 @@ package de.hsb.ms.syn.common.audio;
 import de.hsb.ms.syn.common.audio.fx.LFO;
 import de.hsb.ms.syn.common.audio.gen.Sinewave;
 import de.hsb.ms.syn.common.util.Constants;
+import de.hsb.ms.syn.common.util.DspKernels;
 import de.hsb.ms.syn.common.vo.DraggableNode;
 
 /**
@@ -66,9 +67,14 @@ public abstract class AudioAlgorithm {
 	 * @return
 	 */
 	public float[] fillGenBuffer(float[] buffer) {
-		for (int i = 0; i < Constants.BUFFER_SIZE; i++) {
-			cursor = (cursor >= data.length) ? 0 : cursor;
-			buffer[i] = data[cursor++];
+		// Copy contiguous runs of the data, wrapping around only between runs
+		int i = 0;
+		while (i < buffer.length) {
+			if (cursor >= data.length) cursor = 0;
+			int run = Math.min(buffer.length - i, data.length - cursor);
+			System.arraycopy(data, cursor, buffer, i, run);
+			i += run;
+			cursor += run;
 		}
 		return buffer;
 	}
@@ -80,13 +86,56 @@ public abstract class AudioAlgorithm {
 	 * @return
 	 */
 	public float[] fillFXBuffer(float[] buffer) {
-		for (int i = 0; i < Constants.BUFFER_SIZE; i++) {
-			cursor = (cursor >= data.length) ? 0 : cursor;
-			buffer[i] *= data[cursor++];
+		// Multiply contiguous runs of the data, wrapping around only between runs
+		int i = 0;
+		while (i < buffer.length) {
+			if (cursor >= data.length) cursor = 0;
+			int run = Math.min(buffer.length - i, data.length - cursor);
+			DspKernels.multiply(buffer, i, data, cursor, run);
+			i += run;
+			cursor += run;
 		}
 		return buffer;
 	}
 	
+	/**
+	 * Adapt this algorithm to a new EngineConfig (sample rate or block size).
+	 * This is called while the engine is stopped
+	 */
+	public void reconfigure() {
+		this.recalc();
+	}
+	
+	/**
+	 * Checks if this algorithm is asleep, i.e. if it would only produce silence for the next block.
+	 * The RenderPlan skips sleeping algorithms and checks again every block, so they wake up
+	 * as soon as their input or a parameter change makes them audible again
+	 * @param silentInput	true if the input of the next block is silent (always true for Gen algorithms)
+	 * @return
+	 */
+	public boolean isAsleep(boolean silentInput) {
+		return false;
+	}
+	
+	/**
+	 * Called by the RenderPlan once for each block it skips because this algorithm is asleep
+	 * (isAsleep() itself must not change any state, it may be called more than once per block)
+	 * @param samples	Length of the skipped block
+	 */
+	public void skipBlock(int samples) {
+	}
+	
+	/**
+	 * Handle an event that isn't a plain Property change (e.g. a note event).
+	 * This is called on the audio thread before the key is looked up in the Properties
+	 * @param key	Event key
+	 * @param value	Event value
+	 * @return		true if the event was consumed by this algorithm
+	 */
+	public boolean handleEvent(int key, float value) {
+		return false;
+	}
+	
 	/**
 	 * Set volume to given value [0:1]
 	 * @param volume
@@ -137,6 +186,17 @@ public abstract class AudioAlgorithm {
 		return this.data;
 	}
 	
+	/**
+	 * Create a SmoothedValue that starts at the current value of the given property
+	 * and ramps over the default smoothing time
+	 * @param key	Property key
+	 * @param mode	SmoothedValue ramp constant
+	 * @return
+	 */
+	protected SmoothedValue smoothed(int key, int mode) {
+		return new SmoothedValue(mode, Constants.SMOOTHING_TIME, property(key).val());
+	}
+	
 	/**
 	 * Get the Algorithm's property behind the given key
 	 * @param key
@@ -146,6 +206,24 @@ public abstract class AudioAlgorithm {
 		return this.properties.get(key);
 	}
 	
+	/**
+	 * Get the slot of the property behind the given key (see Properties.slot())
+	 * @param key
+	 * @return
+	 */
+	protected int slot(int key) {
+		return this.properties.slot(key);
+	}
+	
+	/**
+	 * Get the current value of the given property slot
+	 * @param slot
+	 * @return
+	 */
+	protected float value(int slot) {
+		return this.properties.val(slot);
+	}
+	
 	/**
 	 * Get all NodeProperties of this Algorithm
 	 * @return
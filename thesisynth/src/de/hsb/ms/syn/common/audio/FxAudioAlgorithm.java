@@ -22,6 +22,14 @@ public abstract class FxAudioAlgorithm extends AudioAlgorithm {
 		super(freq, name);
 	}
 
+	@Override
+	/**
+	 * By default, Fx algorithms multiply their input, so they sleep while it is silent
+	 */
+	public boolean isAsleep(boolean silentInput) {
+		return silentInput;
+	}
+
 	@Override
 	/**
 	 * Returns the class of the served objects
@@ -1,5 +1,6 @@
 package de.hsb.ms.syn.common.audio;
 
+import de.hsb.ms.syn.common.util.Constants;
 import de.hsb.ms.syn.common.vo.DraggableNode;
 import de.hsb.ms.syn.common.vo.GenNode;
 
@@ -11,6 +12,21 @@ import de.hsb.ms.syn.common.vo.GenNode;
  *
  */
 public abstract class GenAudioAlgorithm extends AudioAlgorithm {
+	
+	/** Number of samples after which a gliding frequency is retuned */
+	private static final int GLIDE_BLOCK = 32;
+	
+	/** Oscillator producing the waveform */
+	private Oscillator oscillator = new Oscillator();
+	/** Smoothed output amplitude (ramps per sample) */
+	private SmoothedValue amplitude;
+	/** Smoothed frequency (ramps per sub-block of GLIDE_BLOCK samples) */
+	private SmoothedValue frequency;
+	
+	/** Property slots read on every recalculation */
+	protected int volumeSlot;
+	private int frequencySlot;
+	private int toneSlot;
 
 	/**
 	 * Constructor
@@ -29,6 +45,106 @@ public abstract class GenAudioAlgorithm extends AudioAlgorithm {
 		
 		// Hide the frequency property (it will not be sent over network)
 		properties.get(Properties.PROP_FREQUENCY).hide();
+		
+		volumeSlot = this.slot(Properties.PROP_VOLUME);
+		frequencySlot = this.slot(Properties.PROP_FREQUENCY);
+		toneSlot = this.slot(Properties.PROP_TONE);
+	}
+
+	/**
+	 * Returns the WavetableBank waveform constant of this generator
+	 * @return
+	 */
+	protected abstract int getWaveform();
+	
+	/**
+	 * Returns the frequency this generator currently plays at.
+	 * It is derived from the Tone property, unless the generator uses a FixedFrequencyScale
+	 * @return
+	 */
+	protected float currentFrequency() {
+		if (scale instanceof FixedFrequencyScale)
+			return this.value(frequencySlot);
+		int knob = (int) this.value(toneSlot);
+		return scale.getFrequencyForKnobValue(knob);
+	}
+	
+	@Override
+	/**
+	 * Recalc this generator: Let the amplitude and frequency ramp towards
+	 * their new values. The phase itself is kept, so that changes are continuous
+	 * and nothing has to be allocated
+	 */
+	public void recalc() {
+		float freq = this.currentFrequency();
+		float volume = this.value(volumeSlot);
+		if (amplitude == null) {
+			// First calculation: Start at the initial values right away
+			amplitude = this.smoothed(Properties.PROP_VOLUME, SmoothedValue.LINEAR);
+			frequency = new SmoothedValue(SmoothedValue.EXPONENTIAL, Constants.SMOOTHING_TIME, freq);
+			oscillator.tune(this.getWaveform(), freq);
+			return;
+		}
+		amplitude.setTarget(volume);
+		frequency.setTarget(freq);
+		if (!frequency.isSmoothing())
+			oscillator.tune(this.getWaveform(), freq);
+	}
+	
+	@Override
+	/**
+	 * Reconfigure this generator: The ramps are measured in samples,
+	 * so they start over with the new sample rate
+	 */
+	public void reconfigure() {
+		amplitude = null;
+		frequency = null;
+		this.recalc();
+	}
+	
+	@Override
+	/**
+	 * A generator sleeps once its amplitude has settled at zero
+	 */
+	public boolean isAsleep(boolean silentInput) {
+		return amplitude != null && !amplitude.isSmoothing() && amplitude.get() == 0f;
+	}
+	
+	@Override
+	/**
+	 * Fill the buffer by advancing the phase accumulator and reading
+	 * the wavetable with linear interpolation
+	 * @param buffer
+	 * @return
+	 */
+	public float[] fillGenBuffer(float[] buffer) {
+		// Steady state: No ramps to follow
+		if (!amplitude.isSmoothing() && !frequency.isSmoothing()) {
+			oscillator.fill(buffer, amplitude.get());
+			return buffer;
+		}
+		
+		// Follow the ramps sub-block by sub-block
+		for (int offset = 0; offset < buffer.length; offset += GLIDE_BLOCK) {
+			int length = Math.min(GLIDE_BLOCK, buffer.length - offset);
+			if (frequency.isSmoothing())
+				oscillator.tune(this.getWaveform(), frequency.advance(length));
+			float from = amplitude.get();
+			oscillator.fill(buffer, offset, length, from, amplitude.advance(length));
+		}
+		return buffer;
+	}
+
+	/**
+	 * Advance this generator by the given number of samples without computing them,
+	 * following its ramps (e.g. to keep a modulation wave running while its output isn't needed)
+	 * @param samples
+	 */
+	public void skip(int samples) {
+		if (frequency.isSmoothing())
+			oscillator.tune(this.getWaveform(), frequency.advance(samples));
+		amplitude.advance(samples);
+		oscillator.skip(samples);
 	}
 
 	@Override
@@ -0,0 +1,95 @@
+package de.hsb.ms.syn.common.audio;
+
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+
+/**
+ * Wavetable oscillator built on a fractional phase accumulator.
+ * It reads one of the shared tables of the WavetableBank with linear interpolation.
+ * Retuning only swaps the table reference and the phase increment, so it is O(1),
+ * phase-continuous and doesn't allocate anything
+ * @author Marcel
+ *
+ */
+public class Oscillator {
+
+	/** Shared wavetable currently read by this oscillator */
+	private float[] table;
+	/** Phase accumulator (position inside the wavetable, fractional) */
+	private double phase;
+	/** Phase increment per sample (in wavetable samples) */
+	private double increment;
+
+	/**
+	 * Tune this oscillator to the given waveform and frequency
+	 * @param waveform	WavetableBank waveform constant
+	 * @param freq		Frequency in Hz
+	 */
+	public void tune(int waveform, float freq) {
+		this.table = WavetableBank.getTable(waveform, freq);
+		this.increment = (double) freq * WavetableBank.TABLE_SIZE / EngineConfig.get().getSampleRate();
+	}
+
+	/**
+	 * Restart the waveform at the beginning of its period
+	 */
+	public void reset() {
+		this.phase = 0;
+	}
+
+	/**
+	 * Advance the phase by the given number of samples without computing them
+	 * @param samples
+	 */
+	public void skip(int samples) {
+		this.phase = (phase + increment * samples) % WavetableBank.TABLE_SIZE;
+	}
+
+	/**
+	 * Compute the next sample and advance the phase
+	 * @return
+	 */
+	public float next() {
+		int index = (int) phase;
+		float frac = (float) (phase - index);
+		float a = table[index];
+		phase += increment;
+		if (phase >= WavetableBank.TABLE_SIZE) phase -= WavetableBank.TABLE_SIZE;
+		return a + frac * (table[index + 1] - a);
+	}
+
+	/**
+	 * Fill the buffer with the next block of samples, scaled by the given amplitude
+	 * @param buffer
+	 * @param amplitude
+	 */
+	public void fill(float[] buffer, float amplitude) {
+		this.fill(buffer, 0, buffer.length, amplitude, amplitude);
+	}
+
+	/**
+	 * Fill a range of the buffer with the next samples, scaled by an amplitude
+	 * that ramps linearly from 'from' to 'to' over the range
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @param from
+	 * @param to
+	 */
+	public void fill(float[] buffer, int offset, int length, float from, float to) {
+		float[] t = this.table;
+		double ph = this.phase;
+		double inc = this.increment;
+		float amplitude = from;
+		float step = (to - from) / length;
+		for (int i = offset; i < offset + length; i++) {
+			int index = (int) ph;
+			float frac = (float) (ph - index);
+			float a = t[index];
+			buffer[i] = amplitude * (a + frac * (t[index + 1] - a));
+			amplitude += step;
+			ph += inc;
+			if (ph >= WavetableBank.TABLE_SIZE) ph -= WavetableBank.TABLE_SIZE;
+		}
+		this.phase = ph;
+	}
+}
@@ -1,9 +1,15 @@
 package de.hsb.ms.syn.common.audio;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import de.hsb.ms.syn.common.util.Utils;
 
@@ -13,7 +19,11 @@ import de.hsb.ms.syn.common.util.Utils;
  * for the algorithm. This includes general parameters
  * needed for all types of sound manipulation algorithms (volume, pan,
  * frequency), but may also involve specific parameters that may be added
- * independently
+ * independently.
+ * The values are kept in a dense float array indexed by a per-algorithm slot,
+ * so that algorithms can read them without hashing or boxing; the Property objects
+ * only hold the metadata (name, bounds, step). On the network, Properties are still
+ * written as a map of id-Property relations
  * @author Marcel
  *
  */
@@ -31,8 +41,24 @@ public class Properties implements Serializable, Iterable<Property> {
 	public static final int PROP_PAN		= 0x14;
 	public static final int PROP_TONE		= 0x15;
 	
-	/** Internal map of the parameters connected to specific Property objects */
-	private Map<Integer, Property> properties;
+	/** Initial number of parameter slots */
+	private static final int INITIAL_SLOTS = 8;
+	
+	/** Fields written to the stream: the same id-to-Property map as before the slot storage */
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("properties", Map.class),
+		new ObjectStreamField("name", String.class),
+		new ObjectStreamField("nodeIndex", int.class)
+	};
+	
+	/** Key of each parameter slot */
+	private transient int[] keys;
+	/** Metadata of each parameter slot (name, bounds, step) */
+	private transient Property[] meta;
+	/** Current value of each parameter slot */
+	private transient float[] values;
+	/** Number of used slots */
+	private transient int count;
 	
 	/** Name of the DraggableNode that holds these Properties */
 	private String name;
@@ -53,10 +79,10 @@ public class Properties implements Serializable, Iterable<Property> {
 		this.name = name;
 		this.nodeIndex = nodeIndex;
 		
-		properties = new HashMap<Integer, Property>();
-		properties.put(PROP_VOLUME, new Property(PROP_VOLUME, "Volume", 0.0f, 1.0f, 0.01f, volume));
-		properties.put(PROP_FREQUENCY, new Property(PROP_FREQUENCY, "Frequency", 20, 2000, 100, frequency));
-		properties.put(PROP_PAN, new Property(PROP_PAN, "Pan", -1.0f, 1.0f, 0.1f, pan));
+		this.allocate(INITIAL_SLOTS);
+		this.put(PROP_VOLUME, new Property(PROP_VOLUME, "Volume", 0.0f, 1.0f, 0.01f, volume));
+		this.put(PROP_FREQUENCY, new Property(PROP_FREQUENCY, "Frequency", 20, 2000, 100, frequency));
+		this.put(PROP_PAN, new Property(PROP_PAN, "Pan", -1.0f, 1.0f, 0.1f, pan));
 	}
 	
 	/**
@@ -66,10 +92,11 @@ public class Properties implements Serializable, Iterable<Property> {
 	public Properties(Properties other) {
 		this.name = other.name();
 		this.nodeIndex = other.nodeIndex();
-		properties = new HashMap<Integer, Property>();
-		for (Property prop : other.properties.values()) {
+		this.allocate(other.count);
+		for (int s = 0; s < other.count; s++) {
+			Property prop = other.meta[s];
 			if (!prop.isHidden())
-				properties.put(prop.id(), new Property(prop, prop.val()));
+				this.put(prop.id(), new Property(prop, other.values[s]));
 		}
 	}
 	
@@ -103,8 +130,9 @@ public class Properties implements Serializable, Iterable<Property> {
 	 * @return
 	 */
 	public Property get(int key) {
-		if (this.has(key))
-			return properties.get(key);
+		int s = this.slot(key);
+		if (s >= 0)
+			return meta[s];
 		
 		Utils.log("NodeProperties: Can't find Key " + key);
 		return null;
@@ -116,18 +144,67 @@ public class Properties implements Serializable, Iterable<Property> {
 	 * @return
 	 */
 	public boolean has(int key) {
-		return (properties.containsKey(key));
+		return (this.slot(key) >= 0);
 	}
 	
 	/**
-	 * Put a Property into the map using the given key
+	 * Put a Property into these Properties using the given key.
+	 * An existing Property with the same key keeps its slot. A Property that
+	 * already belongs to other Properties is copied rather than shared
 	 * @param key
 	 * @param prop
 	 */
 	public void put(int key, Property prop) {
-		properties.put(key, prop);
+		if (prop.owner() != null && prop.owner() != this)
+			prop = new Property(prop, prop.val());
+		
+		int s = this.slot(key);
+		if (s < 0) {
+			if (count == keys.length)
+				this.allocate(count * 2);
+			s = count++;
+			keys[s] = key;
+		} else if (meta[s] != prop) {
+			meta[s].bind(null, -1, values[s]);
+		}
+		values[s] = prop.val();
+		meta[s] = prop;
+		prop.bind(this, s, 0f);
 	}
-
+	
+	/**
+	 * Returns the slot of the given key, or -1 if the key doesn't exist.
+	 * Slots stay the same until a Property is removed, so algorithms may
+	 * look them up once after construction and use them with val(int) afterwards
+	 * @param key
+	 * @return
+	 */
+	public int slot(int key) {
+		for (int s = 0; s < count; s++)
+			if (keys[s] == key)
+				return s;
+		return -1;
+	}
+	
+	/**
+	 * Get the current value of the given slot
+	 * @param slot
+	 * @return
+	 */
+	public float val(int slot) {
+		return values[slot];
+	}
+	
+	/**
+	 * Set the value of the given slot within the bounds of its Property
+	 * @param slot
+	 * @param val
+	 */
+	public void setVal(int slot, float val) {
+		Property p = meta[slot];
+		values[slot] = Math.min(Math.max(p.lo(), val), p.hi());
+	}
+	
 	/**
 	 * Create a duplicate of this instance
 	 * @return
@@ -137,24 +214,105 @@ public class Properties implements Serializable, Iterable<Property> {
 	}
 	
 	/**
-	 * Remove a Property by key from the list of Properties
+	 * Remove a Property by key from the list of Properties.
+	 * The slots of the Properties behind it move up by one
 	 * @param key
 	 */
 	public void remove(int key) {
-		if (this.has(key))
-			properties.remove(key);
+		int s = this.slot(key);
+		if (s < 0) return;
+		
+		meta[s].bind(null, -1, values[s]);
+		count--;
+		for (int i = s; i < count; i++) {
+			keys[i] = keys[i + 1];
+			meta[i] = meta[i + 1];
+			values[i] = values[i + 1];
+			meta[i].bind(this, i, 0f);
+		}
+		meta[count] = null;
+	}
+	
+	/**
+	 * Grow (or initially create) the slot arrays
+	 * @param size
+	 */
+	private void allocate(int size) {
+		size = Math.max(size, 1);
+		if (keys == null) {
+			keys = new int[size];
+			meta = new Property[size];
+			values = new float[size];
+		} else {
+			keys = Arrays.copyOf(keys, size);
+			meta = Arrays.copyOf(meta, size);
+			values = Arrays.copyOf(values, size);
+		}
+	}
+	
+	/**
+	 * Write the Properties as a map of id-Property relations, like controllers expect them
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		Map<Integer, Property> map = new HashMap<Integer, Property>();
+		for (int s = 0; s < count; s++)
+			map.put(keys[s], meta[s]);
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("properties", map);
+		fields.put("name", name);
+		fields.put("nodeIndex", nodeIndex);
+		out.writeFields();
+	}
+	
+	/**
+	 * Read the map of id-Property relations back into slots
+	 * @param in
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		Map<Integer, Property> map = (Map<Integer, Property>) fields.get("properties", null);
+		this.name = (String) fields.get("name", null);
+		this.nodeIndex = fields.get("nodeIndex", -1);
+		this.allocate(map == null ? INITIAL_SLOTS : map.size());
+		if (map != null)
+			for (Map.Entry<Integer, Property> e : map.entrySet())
+				this.put(e.getKey(), e.getValue());
 	}
 	
 	@Override
 	public String toString() {
 		String s = "";
-		for (Property p : properties.values())
-			s += String.format("{%s},", p);
+		for (int i = 0; i < count; i++)
+			s += String.format("{%s},", meta[i]);
 		return s;
 	}
 
 	@Override
 	public Iterator<Property> iterator() {
-		return properties.values().iterator();
+		return new Iterator<Property>() {
+			private int next = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+			
+			@Override
+			public Property next() {
+				if (next >= count)
+					throw new NoSuchElementException();
+				return meta[next++];
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 }
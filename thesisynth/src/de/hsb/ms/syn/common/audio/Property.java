@@ -1,11 +1,14 @@
 package de.hsb.ms.syn.common.audio;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
  * Data structure for one property of a DraggableNode's AudioAlgorithm.
  * This is a basic structure holding three floating-points and a String name
- * that may be used to describe a UI Slider that may alter its value, for instance
+ * that may be used to describe a UI Slider that may alter its value, for instance.
+ * Once it is put into a Properties object, its value lives in that object's value slots
  * @author Marcel
  *
  */
@@ -37,6 +40,12 @@ public class Property implements Serializable {
 	/** Is this property hidden or not? */
 	private boolean hidden;
 	
+	/** Properties holding the value of this property (null if it holds the value itself) */
+	private transient Properties owner;
+	
+	/** Slot of this property's value inside its owner */
+	private transient int slot;
+	
 	/**
 	 * Constructor
 	 * @param name
@@ -102,7 +111,7 @@ public class Property implements Serializable {
 	 * @return
 	 */
 	public float val() {
-		return val;
+		return (owner != null) ? owner.val(slot) : val;
 	}
 	
 	/**
@@ -126,7 +135,32 @@ public class Property implements Serializable {
 	 * @param val
 	 */
 	public void setVal(float val) {
-		this.val = Math.min(Math.max(lo, val), hi);
+		if (owner != null)
+			owner.setVal(slot, val);
+		else
+			this.val = Math.min(Math.max(lo, val), hi);
+	}
+	
+	/**
+	 * Let the given Properties hold the value of this property from now on,
+	 * or take the given value back if the owner is null
+	 * @param owner
+	 * @param slot
+	 * @param val	Value to hold when detached
+	 */
+	void bind(Properties owner, int slot, float val) {
+		if (owner == null)
+			this.val = val;
+		this.owner = owner;
+		this.slot = slot;
+	}
+	
+	/**
+	 * Get the Properties holding the value of this property
+	 * @return
+	 */
+	Properties owner() {
+		return owner;
 	}
 	
 	/**
@@ -152,8 +186,18 @@ public class Property implements Serializable {
 		return this.hidden;
 	}
 	
+	/**
+	 * Take the current value along when written to a stream
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		this.val = this.val();
+		out.defaultWriteObject();
+	}
+	
 	@Override
 	public String toString() {
-		return String.format("{name=%s,lo=%.1f,hi=%.1f,val=%.1f}", name, lo, hi, val);
+		return String.format("{name=%s,lo=%.1f,hi=%.1f,val=%.1f}", name, lo, hi, val());
 	}
 }
@@ -0,0 +1,135 @@
+package de.hsb.ms.syn.common.audio;
+
+import de.hsb.ms.syn.common.util.AudioUtils;
+
+/**
+ * Parameter value that doesn't jump to a new target, but ramps towards it
+ * over a fixed time instead. The ramp is either linear (for volumes and ratios)
+ * or exponential (for frequencies, so that a glide sounds even across octaves).
+ * It may be advanced sample by sample or a whole sub-block at once, without allocating anything
+ * @author Marcel
+ *
+ */
+public class SmoothedValue {
+
+	/* Ramp constants */
+
+	/** Linear ramp */
+	public static final int LINEAR		= 0;
+	/** Exponential ramp (falls back to linear if either end isn't positive) */
+	public static final int EXPONENTIAL	= 1;
+
+	/** Ramp mode of this value */
+	private int mode;
+
+	/** Length of a ramp in samples */
+	private int rampSamples;
+
+	/** Current and target value */
+	private float current;
+	private float target;
+
+	/** Increment (linear) or factor (exponential) per sample of the current ramp */
+	private float step;
+	/** True if the current ramp is exponential */
+	private boolean exponential;
+	/** Remaining samples of the current ramp */
+	private int remaining;
+
+	/**
+	 * Constructor
+	 * @param mode		Ramp constant
+	 * @param rampTime	Ramp time in milliseconds
+	 * @param value		Initial value
+	 */
+	public SmoothedValue(int mode, int rampTime, float value) {
+		this.mode = mode;
+		this.rampSamples = AudioUtils.timeToSamples(rampTime);
+		this.reset(value);
+	}
+
+	/**
+	 * Jump to the given value immediately
+	 * @param value
+	 */
+	public void reset(float value) {
+		this.current = value;
+		this.target = value;
+		this.remaining = 0;
+	}
+
+	/**
+	 * Start ramping towards the given value
+	 * @param value
+	 */
+	public void setTarget(float value) {
+		if (value == target) return;
+		target = value;
+		if (rampSamples <= 0 || value == current) {
+			this.reset(value);
+			return;
+		}
+		remaining = rampSamples;
+		exponential = (mode == EXPONENTIAL && current > 0 && value > 0);
+		if (exponential)
+			step = (float) Math.pow(value / current, 1.0 / rampSamples);
+		else
+			step = (value - current) / rampSamples;
+	}
+
+	/**
+	 * Advance the ramp by one sample
+	 * @return	The new current value
+	 */
+	public float next() {
+		if (remaining > 0) {
+			if (--remaining == 0)
+				current = target;
+			else
+				current = exponential ? current * step : current + step;
+		}
+		return current;
+	}
+
+	/**
+	 * Advance the ramp by the given number of samples
+	 * @param samples
+	 * @return	The new current value
+	 */
+	public float advance(int samples) {
+		if (remaining > 0) {
+			if (samples >= remaining) {
+				remaining = 0;
+				current = target;
+			} else {
+				remaining -= samples;
+				current = exponential ? current * (float) Math.pow(step, samples) : current + step * samples;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Returns true while the value is ramping
+	 * @return
+	 */
+	public boolean isSmoothing() {
+		return remaining > 0;
+	}
+
+	/**
+	 * Get current value
+	 * @return
+	 */
+	public float get() {
+		return current;
+	}
+
+	/**
+	 * Get target value
+	 * @return
+	 */
+	public float getTarget() {
+		return target;
+	}
+}
@@ -0,0 +1,225 @@
+package de.hsb.ms.syn.common.audio;
+
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+
+/**
+ * Fixed, preallocated pool of oscillator voices used by polyphonic generators.
+ * Each voice has got a short linear attack and release ramp to avoid clicks.
+ * When a note is started while every voice is busy, one of them is stolen
+ * according to the pool's stealing mode. Starting and stopping notes never allocates
+ * @author Marcel
+ *
+ */
+public class VoicePool {
+
+	/* Stealing mode constants */
+
+	/** Steal the voice that was started first */
+	public static final int STEAL_OLDEST	= 0;
+	/** Steal the voice with the lowest current level */
+	public static final int STEAL_QUIETEST	= 1;
+
+	/** Attack time of each voice in milliseconds */
+	private static final float ATTACK_MS	= 5;
+	/** Release time of each voice in milliseconds */
+	private static final float RELEASE_MS	= 50;
+
+	/**
+	 * Nested class for one voice of the pool
+	 * @author Marcel
+	 *
+	 */
+	private static class Voice {
+
+		/** Oscillator of this voice */
+		private Oscillator oscillator = new Oscillator();
+		/** Note (knob value) played by this voice, or -1 if it is free */
+		private int note = -1;
+		/** Sequence number of the note-on event that started this voice */
+		private long started;
+		/** Current envelope level [0:1] */
+		private float level;
+		/** True while the note is held, false while it is being released */
+		private boolean held;
+	}
+
+	/** Voices of this pool */
+	private final Voice[] voices;
+
+	/** Stealing mode of this pool */
+	private int stealMode;
+
+	/** Counter of note-on events */
+	private long noteCounter;
+
+	/**
+	 * Constructor
+	 * @param size		Number of voices
+	 * @param stealMode	Stealing mode constant
+	 */
+	public VoicePool(int size, int stealMode) {
+		this.voices = new Voice[size];
+		for (int i = 0; i < size; i++)
+			voices[i] = new Voice();
+		this.stealMode = stealMode;
+	}
+
+	/**
+	 * Start a note
+	 * @param note		Note identifier (knob value), used to stop it again
+	 * @param waveform	WavetableBank waveform constant
+	 * @param freq		Frequency of the note
+	 */
+	public void noteOn(int note, int waveform, float freq) {
+		Voice v = this.findVoice(note);
+		if (v.note != note) {
+			// Only restart the waveform if the voice was silent, stolen voices continue their phase
+			if (v.level == 0) v.oscillator.reset();
+			v.note = note;
+		}
+		v.oscillator.tune(waveform, freq);
+		v.started = noteCounter++;
+		v.held = true;
+	}
+
+	/**
+	 * Release every voice playing the given note
+	 * @param note
+	 */
+	public void noteOff(int note) {
+		for (Voice v : voices)
+			if (v.note == note)
+				v.held = false;
+	}
+
+	/**
+	 * Release every voice
+	 */
+	public void allNotesOff() {
+		for (Voice v : voices)
+			v.held = false;
+	}
+
+	/**
+	 * Retune every voice to a new waveform (frequencies are resolved by the given scale)
+	 * @param waveform
+	 * @param scale
+	 */
+	public void retune(int waveform, Scale scale) {
+		for (Voice v : voices)
+			if (v.note >= 0)
+				v.oscillator.tune(waveform, scale.getFrequencyForKnobValue(v.note));
+	}
+
+	/**
+	 * Add the next block of every sounding voice to the buffer
+	 * @param buffer
+	 * @param amplitude	Amplitude of each voice
+	 */
+	public void render(float[] buffer, float amplitude) {
+		this.render(buffer, amplitude, amplitude);
+	}
+
+	/**
+	 * Add the next block of every sounding voice to the buffer, with an amplitude
+	 * that ramps linearly from 'from' to 'to' across the block
+	 * @param buffer
+	 * @param from	Amplitude of each voice at the first sample
+	 * @param to	Amplitude of each voice after the last sample
+	 */
+	public void render(float[] buffer, float from, float to) {
+		// Envelope increments per sample
+		int rate = EngineConfig.get().getSampleRate();
+		float attackStep = 1000.0f / (ATTACK_MS * rate);
+		float releaseStep = 1000.0f / (RELEASE_MS * rate);
+		float amplitudeStep = (to - from) / buffer.length;
+		
+		for (Voice v : voices) {
+			if (v.note < 0) continue;
+			Oscillator osc = v.oscillator;
+			float level = v.level;
+			float amplitude = from;
+			for (int i = 0; i < buffer.length; i++) {
+				if (v.held)
+					level = Math.min(level + attackStep, 1f);
+				else
+					level = Math.max(level - releaseStep, 0f);
+				buffer[i] += amplitude * level * osc.next();
+				amplitude += amplitudeStep;
+			}
+			v.level = level;
+
+			// Free the voice once its release has finished
+			if (!v.held && level == 0)
+				v.note = -1;
+		}
+	}
+
+	/**
+	 * Advance every sounding voice by the given number of samples without rendering it
+	 * (its envelope and phase move on as if it had been rendered)
+	 * @param samples
+	 */
+	public void skip(int samples) {
+		int rate = EngineConfig.get().getSampleRate();
+		float attackStep = 1000.0f / (ATTACK_MS * rate);
+		float releaseStep = 1000.0f / (RELEASE_MS * rate);
+		
+		for (Voice v : voices) {
+			if (v.note < 0) continue;
+			if (v.held)
+				v.level = Math.min(v.level + attackStep * samples, 1f);
+			else
+				v.level = Math.max(v.level - releaseStep * samples, 0f);
+			v.oscillator.skip(samples);
+
+			// Free the voice once its release has finished
+			if (!v.held && v.level == 0)
+				v.note = -1;
+		}
+	}
+
+	/**
+	 * Set the stealing mode
+	 * @param stealMode
+	 */
+	public void setStealMode(int stealMode) {
+		this.stealMode = stealMode;
+	}
+
+	/**
+	 * Returns the number of voices that are currently sounding
+	 * @return
+	 */
+	public int activeVoices() {
+		int count = 0;
+		for (Voice v : voices)
+			if (v.note >= 0) count++;
+		return count;
+	}
+
+	/**
+	 * Find the voice to play the given note: the voice already playing it,
+	 * a free voice, or a stolen one
+	 * @param note
+	 * @return
+	 */
+	private Voice findVoice(int note) {
+		Voice free = null;
+		Voice victim = voices[0];
+		for (Voice v : voices) {
+			if (v.note == note)
+				return v;
+			if (v.note < 0) {
+				if (free == null) free = v;
+				continue;
+			}
+			if (stealMode == STEAL_QUIETEST) {
+				if (v.level < victim.level) victim = v;
+			} else if (v.started < victim.started) {
+				victim = v;
+			}
+		}
+		return (free != null) ? free : victim;
+	}
+}
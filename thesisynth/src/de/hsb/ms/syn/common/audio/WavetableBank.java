@@ -0,0 +1,183 @@
+package de.hsb.ms.syn.common.audio;
+
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+
+/**
+ * Process-wide bank of precomputed, band-limited single-period wavetables
+ * shared by all GenAudioAlgorithm instances. Each waveform is stored as a set of
+ * mip-levels, one per octave, each of which only contains the harmonics that stay
+ * below the Nyquist frequency for the highest fundamental of its octave.
+ * The tables are computed on first access, and again whenever the sample rate
+ * of the EngineConfig has changed. They must never be written to
+ * @author Marcel
+ *
+ */
+public final class WavetableBank {
+
+	/* Waveform constants */
+
+	public static final int WAVE_SINE		= 0;
+	public static final int WAVE_SQUARE		= 1;
+	public static final int WAVE_SAWTOOTH	= 2;
+	public static final int WAVE_TRIANGLE	= 3;
+
+	/** Number of samples per table (one period). Must be a power of two */
+	public static final int TABLE_SIZE = 2048;
+
+	/** Lowest fundamental frequency of the first mip-level */
+	private static final float LOWEST_FREQUENCY = 20.0f;
+
+	/** Number of mip-levels (octaves) per waveform */
+	private static final int LEVELS = 11;
+
+	/**
+	 * Nested class for the tables computed for one sample rate
+	 * @author Marcel
+	 *
+	 */
+	private static final class Tables {
+		/** Sample rate the tables were computed for */
+		private final int rate;
+		/**
+		 * Tables: [waveform][level][sample]. Each table has TABLE_SIZE + 1 samples,
+		 * the last one being a copy of the first one so that interpolating readers don't need to wrap
+		 */
+		private final float[][][] data;
+
+		/**
+		 * Constructor
+		 * @param rate
+		 */
+		private Tables(int rate) {
+			this.rate = rate;
+			this.data = computeTables(rate);
+		}
+	}
+
+	/** Tables of the current sample rate */
+	private static volatile Tables tables;
+
+	/** Private constructor (static access only) */
+	private WavetableBank() {}
+
+	/**
+	 * Get the table of the given waveform that is suitable for playback at the given frequency
+	 * @param waveform	Waveform constant
+	 * @param freq		Fundamental frequency the table will be played back at
+	 * @return			Shared, read-only table with TABLE_SIZE + 1 samples
+	 */
+	public static float[] getTable(int waveform, float freq) {
+		Tables t = tables;
+		if (t == null || t.rate != EngineConfig.get().getSampleRate())
+			t = prepare();
+		return t.data[waveform][levelForFrequency(freq)];
+	}
+
+	/**
+	 * Returns the tables for the current sample rate, computing them if necessary
+	 * @return
+	 */
+	private static synchronized Tables prepare() {
+		int rate = EngineConfig.get().getSampleRate();
+		if (tables == null || tables.rate != rate)
+			tables = new Tables(rate);
+		return tables;
+	}
+
+	/**
+	 * Compute the tables for the current sample rate, unless that has happened already.
+	 * Call this before starting the engine, so that the audio thread doesn't have to
+	 */
+	public static void prepareTables() {
+		prepare();
+	}
+
+	/**
+	 * Returns the mip-level index for the given frequency
+	 * @param freq
+	 * @return
+	 */
+	private static int levelForFrequency(float freq) {
+		int level = 0;
+		float top = LOWEST_FREQUENCY * 2;
+		while (freq >= top && level < LEVELS - 1) {
+			top *= 2;
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Compute every table of the bank
+	 * @param rate	Sample rate
+	 * @return
+	 */
+	private static float[][][] computeTables(int rate) {
+		// Base sine used to look up each harmonic: sin(2 * PI * n * i / N) = sine[(n * i) % N]
+		double[] sine = new double[TABLE_SIZE];
+		for (int i = 0; i < TABLE_SIZE; i++)
+			sine[i] = Math.sin(2 * Math.PI * i / TABLE_SIZE);
+
+		float[][][] tables = new float[4][LEVELS][];
+		float nyquist = rate / 2.0f;
+		float top = LOWEST_FREQUENCY * 2;
+		for (int level = 0; level < LEVELS; level++) {
+			// Number of harmonics that stay below Nyquist for the highest frequency of this octave
+			int harmonics = Math.max(1, Math.min((int) (nyquist / top), TABLE_SIZE / 2 - 1));
+			tables[WAVE_SQUARE][level]   = computeTable(sine, WAVE_SQUARE, harmonics);
+			tables[WAVE_SAWTOOTH][level] = computeTable(sine, WAVE_SAWTOOTH, harmonics);
+			tables[WAVE_TRIANGLE][level] = computeTable(sine, WAVE_TRIANGLE, harmonics);
+			top *= 2;
+		}
+
+		// A sinewave has no harmonics, so every level can share the same table
+		float[] pure = computeTable(sine, WAVE_SINE, 1);
+		for (int level = 0; level < LEVELS; level++)
+			tables[WAVE_SINE][level] = pure;
+
+		return tables;
+	}
+
+	/**
+	 * Compute one table by additive synthesis of its Fourier series,
+	 * normalized to a peak amplitude of 1
+	 * @param sine		Base sine table
+	 * @param waveform	Waveform constant
+	 * @param harmonics	Highest harmonic to include
+	 * @return
+	 */
+	private static float[] computeTable(double[] sine, int waveform, int harmonics) {
+		int mask = TABLE_SIZE - 1;
+		double[] sum = new double[TABLE_SIZE];
+		for (int n = 1; n <= harmonics; n++) {
+			double amp;
+			switch (waveform) {
+			case WAVE_SQUARE:	// Odd harmonics, 1/n
+				amp = (n % 2 == 1) ? 1.0 / n : 0;
+				break;
+			case WAVE_SAWTOOTH:	// All harmonics, 1/n with alternating sign
+				amp = ((n % 2 == 1) ? 1.0 : -1.0) / n;
+				break;
+			case WAVE_TRIANGLE:	// Odd harmonics, 1/n^2 with alternating sign
+				amp = (n % 2 == 1) ? (((n / 2) % 2 == 0) ? 1.0 : -1.0) / ((double) n * n) : 0;
+				break;
+			default:			// Sine: fundamental only
+				amp = (n == 1) ? 1.0 : 0;
+				break;
+			}
+			if (amp == 0) continue;
+			for (int i = 0; i < TABLE_SIZE; i++)
+				sum[i] += amp * sine[(n * i) & mask];
+		}
+
+		// Normalize
+		double peak = 0;
+		for (int i = 0; i < TABLE_SIZE; i++)
+			peak = Math.max(peak, Math.abs(sum[i]));
+		float[] table = new float[TABLE_SIZE + 1];
+		for (int i = 0; i < TABLE_SIZE; i++)
+			table[i] = (float) (sum[i] / peak);
+		table[TABLE_SIZE] = table[0];
+		return table;
+	}
+}
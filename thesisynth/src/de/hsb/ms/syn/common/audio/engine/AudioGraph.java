@@ -0,0 +1,459 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Headless model of the synthesizer's Node graph.
+ * It keeps the AudioNodes on the surface, arranges them into sound paths
+ * around the center AudioNode and compiles the result into a RenderPlan.
+ * Every arrangement is recorded (which candidates each AudioNode looked at, and when),
+ * so that moving a single AudioNode only re-arranges the graph if the move
+ * can actually change one of those decisions (see rearrange()).
+ * It doesn't depend on any graphical classes, so the engine can run without a display
+ * @author Marcel
+ *
+ */
+public class AudioGraph {
+
+	/** Center AudioNode from which the arrangement starts */
+	private final AudioNode center;
+
+	/** Map that maps AudioNode IDs to themselves (the center AudioNode isn't part of it) */
+	private final Map<Integer, AudioNode> nodes;
+
+	/** Record of the last arrangement for each AudioNode that looked for inputs */
+	private final Map<AudioNode, Decision> decisions = new IdentityHashMap<AudioNode, Decision>();
+	/** Number of connections made before (and including) each arranged AudioNode's connection */
+	private final Map<AudioNode, Integer> arrangedAt = new IdentityHashMap<AudioNode, Integer>();
+	/** Spatial index of the last arrangement */
+	private SpatialIndex index;
+	/** AudioNodes that have been moved since the spatial index was built (it has them in their old cells) */
+	private final Set<AudioNode> displaced = Collections.newSetFromMap(new IdentityHashMap<AudioNode, Boolean>());
+	/** Number of connections made so far by the running arrangement */
+	private int clock;
+	/** Flag if the records describe the current AudioNodes (cleared when AudioNodes are added or removed) */
+	private boolean recorded;
+
+	/**
+	 * Constructor
+	 * @param center
+	 */
+	public AudioGraph(AudioNode center) {
+		this.center = center;
+		this.nodes = new HashMap<Integer, AudioNode>();
+	}
+
+	/**
+	 * Add an AudioNode to the graph (it is connected by the next arrange())
+	 * @param n
+	 */
+	public void add(AudioNode n) {
+		nodes.put(n.getID(), n);
+		recorded = false;
+	}
+
+	/**
+	 * Remove an AudioNode from the graph (it is disconnected by the next arrange()).
+	 * The AudioNode isn't disposed, as a RenderPlan compiled earlier may still be rendering it
+	 * @param n
+	 * @return	true if the AudioNode was part of the graph
+	 */
+	public boolean remove(AudioNode n) {
+		recorded = false;
+		return nodes.remove(n.getID()) != null;
+	}
+
+	/**
+	 * Remove every AudioNode but the center (without disposing them, see remove())
+	 */
+	public void clear() {
+		nodes.clear();
+		recorded = false;
+	}
+
+	/**
+	 * Returns the AudioNode with the given ID, or null
+	 * @param id
+	 * @return
+	 */
+	public AudioNode get(int id) {
+		return nodes.get(id);
+	}
+
+	/**
+	 * Returns each AudioNode of the graph (without the center)
+	 * @return
+	 */
+	public Collection<AudioNode> getNodes() {
+		return nodes.values();
+	}
+
+	/**
+	 * Returns the center AudioNode
+	 * @return
+	 */
+	public AudioNode getCenter() {
+		return center;
+	}
+
+	/**
+	 * Re-arrange every AudioNode into sound paths, starting with the center
+	 */
+	public void arrange() {
+		for (AudioNode n : nodes.values())
+			n.setArranged(false);
+		decisions.clear();
+		arrangedAt.clear();
+		clock = 0;
+		index = new SpatialIndex(nodes.values());
+		displaced.clear();
+		this.arrange(center, index);
+		recorded = true;
+	}
+
+	/**
+	 * Re-arrange the graph after the given AudioNode has been moved.
+	 * The recorded decisions of the last arrangement are checked against the new position first:
+	 * if none of them would turn out differently, the arrangement is kept as it is
+	 * (and the records are updated to the new position).
+	 * Otherwise the graph is re-arranged and the connections are compared to the old ones
+	 * @param moved
+	 * @return	true if any connection has changed (and the graph has to be compiled again)
+	 */
+	public boolean rearrange(AudioNode moved) {
+		if (!recorded) {
+			this.arrange();
+			return true;
+		}
+		if (!this.affects(moved)) {
+			this.update(moved);
+			return false;
+		}
+
+		// Remember the old connections to find out if anything has changed
+		Map<AudioNode, List<AudioNode>> old = new IdentityHashMap<AudioNode, List<AudioNode>>();
+		for (AudioNode n : decisions.keySet())
+			old.put(n, new ArrayList<AudioNode>(n.getInputs()));
+
+		this.arrange();
+
+		if (old.size() != decisions.size())
+			return true;
+		for (AudioNode n : decisions.keySet()) {
+			List<AudioNode> inputs = old.get(n);
+			if (inputs == null || !inputs.equals(n.getInputs()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Compile the current arrangement into a flat RenderPlan
+	 * @return
+	 */
+	public RenderPlan compile() {
+		RenderPlan.Builder builder = new RenderPlan.Builder();
+		center.compile(builder);
+		return builder.build();
+	}
+
+	/**
+	 * Arrange the given AudioNode with its inputs to form a computation graph
+	 * @param node
+	 * @param index	Spatial index over every AudioNode of the graph
+	 */
+	private void arrange(AudioNode node, SpatialIndex index) {
+		// If the AudioNode does not allow any inputs, return immediately
+		if (node.getMaxInputs() == 0)
+			return;
+
+		// Delete the AudioNode's structure
+		List<AudioNode> inputs = node.getInputs();
+		inputs.clear();
+
+		// Now, access the AudioNodes that haven't been arranged yet, nearest first,
+		// and create a relation as long as this node still has got
+		// some empty inputs. After that, recursively go over the path
+		// of that AudioNode and build more relations for its inputs
+		SpatialIndex.Search search = index.search(node);
+		Decision decision = new Decision();
+		decisions.put(node, decision);
+		while (node.getMaxInputs() - inputs.size() > 0) {
+			AudioNode next = search.next();
+			if (next == null) {
+				decision.exhaust(clock);
+				break;
+			}
+			// Check if this "next" AudioNode is also closest to the current one
+			// (i.e. also "interested" in the relation)
+			boolean match = !this.closerToCenterThan(next, (int) search.distance());
+			decision.examine(next, search.distance(), match, clock);
+			if (match) {
+				// Match!
+				inputs.add(next);
+				next.setArranged(true);
+				arrangedAt.put(next, ++clock);
+				// Arrange the next one
+				this.arrange(next, index);
+			}
+		}
+	}
+
+	/**
+	 * Checks if moving the given AudioNode to its current position may change any
+	 * decision of the last arrangement. A decision stays the same if the moved AudioNode
+	 * is looked at in the same order among the other candidates and with the same result,
+	 * or if it still isn't looked at (because it is too far away or connected elsewhere by then)
+	 * @param moved
+	 * @return
+	 */
+	private boolean affects(AudioNode moved) {
+		Integer connected = arrangedAt.get(moved);
+		List<AudioNode> between = new ArrayList<AudioNode>();
+		for (Map.Entry<AudioNode, Decision> e : decisions.entrySet()) {
+			AudioNode node = e.getKey();
+			Decision d = e.getValue();
+
+			// The moved AudioNode looks for its own inputs from its new position
+			if (node == moved) {
+				if (this.changesOwn(moved, d))
+					return true;
+				continue;
+			}
+
+			float distance = node.distanceTo(moved);
+			int rank = d.rank(moved, distance);
+			int seen = d.indexOf(moved);
+			if (seen >= 0) {
+				// Looked at before: It must keep its place and get the same answer
+				if (rank != seen || d.matches[seen] == this.closerToCenterThan(moved, (int) distance))
+					return true;
+				// If it moved away, the AudioNodes it passed are now found before it. Those weren't
+				// looked at before, so they must have been connected by the time it was looked at
+				float before = d.distances[seen];
+				if (distance > before) {
+					between.clear();
+					this.collect(node, before, distance, between);
+					for (AudioNode other : between) {
+						if (other == moved
+								|| !Decision.precedes(before, moved, node.distanceTo(other), other)
+								|| !Decision.precedes(node.distanceTo(other), other, distance, moved))
+							continue;
+						Integer time = arrangedAt.get(other);
+						if (time == null || time > d.clocks[seen])
+							return true;
+					}
+				}
+			} else {
+				// Not looked at before: It must not be found now, unless it is connected by then
+				int time;
+				if (rank < d.size)
+					time = d.clocks[rank];
+				else if (d.exhausted)
+					time = d.end;
+				else
+					continue;
+				if (connected == null || connected > time)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the moved AudioNode's own search for inputs may turn out differently from its new position.
+	 * It stays the same if the candidates it looked at come up in the same order and get the same answers,
+	 * and if every other AudioNode that it would now find first was connected elsewhere by then
+	 * @param moved
+	 * @param d		Decision of the moved AudioNode
+	 * @return
+	 */
+	private boolean changesOwn(AudioNode moved, Decision d) {
+		float[] now = new float[d.size];
+		for (int i = 0; i < d.size; i++) {
+			AudioNode c = d.candidates[i];
+			now[i] = moved.distanceTo(c);
+			if (i > 0 && !Decision.precedes(now[i - 1], d.candidates[i - 1], now[i], c))
+				return true;
+			if (d.matches[i] == this.closerToCenterThan(c, (int) now[i]))
+				return true;
+		}
+
+		// Unless the search ran out of candidates, only AudioNodes up to the last candidate could be found
+		List<AudioNode> others = new ArrayList<AudioNode>();
+		if (d.exhausted)
+			others.addAll(nodes.values());
+		else if (d.size > 0)
+			this.collect(moved, 0, now[d.size - 1], others);
+		for (AudioNode other : others) {
+			if (other == moved || d.indexOf(other) >= 0)
+				continue;
+			float distance = moved.distanceTo(other);
+			int rank = 0;
+			while (rank < d.size && Decision.precedes(now[rank], d.candidates[rank], distance, other))
+				rank++;
+			int time;
+			if (rank < d.size)
+				time = d.clocks[rank];
+			else if (d.exhausted)
+				time = d.end;
+			else
+				continue;
+			Integer connected = arrangedAt.get(other);
+			if (connected == null || connected > time)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Update the records of the last arrangement after the given AudioNode has been moved
+	 * without changing any decision
+	 * @param moved
+	 */
+	private void update(AudioNode moved) {
+		for (Map.Entry<AudioNode, Decision> e : decisions.entrySet()) {
+			AudioNode node = e.getKey();
+			Decision d = e.getValue();
+			if (node == moved) {
+				for (int i = 0; i < d.size; i++)
+					d.distances[i] = moved.distanceTo(d.candidates[i]);
+			} else {
+				int seen = d.indexOf(moved);
+				if (seen >= 0)
+					d.distances[seen] = node.distanceTo(moved);
+			}
+		}
+		displaced.add(moved);
+	}
+
+	/**
+	 * Add every AudioNode whose distance to the given origin lies within [from:to] to the given list.
+	 * Like SpatialIndex.collect(), but it also finds the AudioNodes that have been moved since the index was built
+	 * @param origin
+	 * @param from
+	 * @param to
+	 * @param out
+	 */
+	private void collect(AudioNode origin, float from, float to, List<AudioNode> out) {
+		int start = out.size();
+		index.collect(origin, from, to, out);
+		if (displaced.isEmpty())
+			return;
+		for (int i = out.size() - 1; i >= start; i--)
+			if (displaced.contains(out.get(i)))
+				out.remove(i);
+		for (AudioNode n : displaced) {
+			float d = origin.distanceTo(n);
+			if (n != origin && d >= from && d <= to)
+				out.add(n);
+		}
+	}
+
+	/**
+	 * Returns true if the given AudioNode is closer to the center than the given Integer distance,
+	 * false if this is not the case.
+	 * @param node
+	 * @param distance
+	 * @return
+	 */
+	private boolean closerToCenterThan(AudioNode node, int distance) {
+		return ((int) node.distanceTo(center) < distance);
+	}
+
+	/**
+	 * Record of the candidates one AudioNode looked at while it was arranged, nearest first
+	 * @author Marcel
+	 *
+	 */
+	private static class Decision {
+
+		/** Candidates that were looked at */
+		private AudioNode[] candidates = new AudioNode[4];
+		/** Distance of each candidate */
+		private float[] distances = new float[4];
+		/** Flag for each candidate if it was connected */
+		private boolean[] matches = new boolean[4];
+		/** Number of connections made before each candidate was looked at */
+		private int[] clocks = new int[4];
+		/** Number of candidates */
+		private int size;
+
+		/** Flag if the search ran out of candidates before every input was taken */
+		private boolean exhausted;
+		/** Number of connections made before the search ran out of candidates */
+		private int end;
+
+		/**
+		 * Record a candidate that was looked at
+		 */
+		public void examine(AudioNode candidate, float distance, boolean match, int clock) {
+			if (size == candidates.length) {
+				candidates = Arrays.copyOf(candidates, size * 2);
+				distances = Arrays.copyOf(distances, size * 2);
+				matches = Arrays.copyOf(matches, size * 2);
+				clocks = Arrays.copyOf(clocks, size * 2);
+			}
+			candidates[size] = candidate;
+			distances[size] = distance;
+			matches[size] = match;
+			clocks[size] = clock;
+			size++;
+		}
+
+		/**
+		 * Record that the search ran out of candidates
+		 * @param clock
+		 */
+		public void exhaust(int clock) {
+			exhausted = true;
+			end = clock;
+		}
+
+		/**
+		 * Returns the index of the given candidate, or -1 if it wasn't looked at
+		 * @param candidate
+		 * @return
+		 */
+		public int indexOf(AudioNode candidate) {
+			for (int i = 0; i < size; i++)
+				if (candidates[i] == candidate)
+					return i;
+			return -1;
+		}
+
+		/**
+		 * Returns the number of other candidates that come before the given one at the given distance
+		 * (ordered like SpatialIndex.Search: by distance, then by ID)
+		 * @param candidate
+		 * @param distance
+		 * @return
+		 */
+		public int rank(AudioNode candidate, float distance) {
+			int rank = 0;
+			for (int i = 0; i < size; i++) {
+				if (candidates[i] == candidate)
+					continue;
+				if (precedes(distances[i], candidates[i], distance, candidate))
+					rank++;
+			}
+			return rank;
+		}
+
+		/**
+		 * Checks if candidate a at distance da is looked at before candidate b at distance db
+		 * (ordered like SpatialIndex.Search: by distance, then by ID)
+		 */
+		public static boolean precedes(float da, AudioNode a, float db, AudioNode b) {
+			return da < db || (da == db && a.getID() < b.getID());
+		}
+	}
+}
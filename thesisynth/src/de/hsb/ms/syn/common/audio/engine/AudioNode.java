@@ -0,0 +1,311 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+
+/**
+ * Audio model of a Node on the synthesizer's surface.
+ * It holds everything the engine needs to know about a Node (its inputs, position
+ * and algorithm), but nothing of its visual representation, so that it can exist
+ * without a GL context. The Node actors in the vo package observe their AudioNode
+ * @author Marcel
+ *
+ */
+public class AudioNode {
+
+	/* Kind constants */
+
+	/** Kind: Mixes its inputs (Center node) */
+	public static final int KIND_MIX		= 0;
+	/** Kind: Produces audio with a Gen algorithm */
+	public static final int KIND_GENERATOR	= 1;
+	/** Kind: Mixes its inputs and applies an Fx algorithm */
+	public static final int KIND_EFFECT		= 2;
+	/** Kind: Produces audio with a SignalSource */
+	public static final int KIND_SOURCE		= 3;
+
+	/** ID counter for all AudioNode objects */
+	private static int cnt = 0;
+
+	/** ID number */
+	private final int id;
+	/** Kind constant of this AudioNode */
+	private final int kind;
+
+	/** Input slots and maximum number of inputs */
+	private final List<AudioNode> inputs;
+	private final int maxInputs;
+
+	/** Position of the Node's center on the synthesizer surface */
+	private float x;
+	private float y;
+
+	/** Flag during AudioGraph.arrange() */
+	private boolean arranged = false;
+
+	/** Algorithm filling this AudioNode's buffer (KIND_GENERATOR and KIND_EFFECT only) */
+	private AudioAlgorithm algorithm;
+	/** Source filling this AudioNode's buffer (KIND_SOURCE only) */
+	private SignalSource source;
+
+	/**
+	 * Constructor
+	 * @param kind		Kind constant
+	 * @param inputs	Number of inputs allowed for this AudioNode
+	 */
+	public AudioNode(int kind, int inputs) {
+		this.id = cnt++;
+		this.kind = kind;
+		this.maxInputs = inputs;
+		this.inputs = new ArrayList<AudioNode>(inputs);
+	}
+
+	/**
+	 * Add the operation of this AudioNode to the given RenderPlan, after the operations of its inputs.
+	 * An AudioNode that feeds several others is added only once, so that its output
+	 * is computed once per block and shared by all of its consumers
+	 * @param plan
+	 * @return	Index of the operation producing this AudioNode's buffer
+	 */
+	public int compile(RenderPlan.Builder plan) {
+		int op = plan.lookup(this);
+		if (op >= 0)
+			return op;
+		
+		switch (kind) {
+		case KIND_GENERATOR:
+			op = plan.addGenerator(algorithm);
+			break;
+		case KIND_EFFECT:
+			op = plan.addEffect(algorithm, this.compileInputs(plan));
+			break;
+		case KIND_SOURCE:
+			op = plan.addSource(source);
+			break;
+		default:
+			op = plan.addMix(this.compileInputs(plan));
+			break;
+		}
+		return plan.remember(this, op);
+	}
+
+	/**
+	 * Add the operation of this AudioNode to the given transition RenderPlan, which leads from the connections
+	 * of one GraphSnapshot to those of another one. Inputs that are new fade in, inputs that are
+	 * going away fade out (and are still computed until then)
+	 * @param plan
+	 * @param to	Snapshot with the new connections
+	 * @param from	Snapshot with the old connections
+	 * @return	Index of the operation producing this AudioNode's buffer,
+	 * 			or -1 if the old connections would lead back to an AudioNode that is being added
+	 */
+	int compile(RenderPlan.Builder plan, GraphSnapshot to, GraphSnapshot from) {
+		int op = plan.lookup(this);
+		if (op >= 0)
+			return op;
+		if (plan.isOpen(this))
+			return -1;
+		plan.open(this);
+		
+		AudioNode[] now = to.getInputs(this);
+		AudioNode[] before = from.getInputs(this);
+		int[] ops = new int[now.length + before.length];
+		int[] fades = new int[ops.length];
+		int count = 0;
+		
+		// The new inputs are required
+		for (AudioNode n : now) {
+			ops[count] = n.compile(plan, to, from);
+			if (ops[count] < 0) {
+				plan.close(this);
+				return -1;
+			}
+			fades[count++] = contains(before, n) ? RenderPlan.FADE_NONE : RenderPlan.FADE_IN;
+		}
+		// The old ones are dropped at once if they would close a loop
+		for (AudioNode n : before) {
+			if (contains(now, n)) continue;
+			ops[count] = n.compile(plan, to, from);
+			if (ops[count] >= 0)
+				fades[count++] = RenderPlan.FADE_OUT;
+		}
+		ops = Arrays.copyOf(ops, count);
+		fades = Arrays.copyOf(fades, count);
+		
+		switch (kind) {
+		case KIND_GENERATOR:
+			op = plan.addGenerator(algorithm);
+			break;
+		case KIND_EFFECT:
+			op = plan.addEffect(algorithm, ops, fades);
+			break;
+		case KIND_SOURCE:
+			op = plan.addSource(source);
+			break;
+		default:
+			op = plan.addMix(ops, fades);
+			break;
+		}
+		return plan.remember(this, op);
+	}
+
+	/**
+	 * Checks if the given array contains the given AudioNode
+	 * @param nodes
+	 * @param n
+	 * @return
+	 */
+	private static boolean contains(AudioNode[] nodes, AudioNode n) {
+		for (AudioNode m : nodes)
+			if (m == n)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Adapt the algorithm or source of this AudioNode to a new EngineConfig
+	 */
+	public void reconfigure() {
+		if (algorithm != null)
+			algorithm.reconfigure();
+		if (source != null)
+			source.reconfigure();
+	}
+
+	/**
+	 * Release the resources of the source of this AudioNode
+	 */
+	public void dispose() {
+		if (source != null)
+			source.release();
+	}
+
+	/**
+	 * Add the operations of each input path of this AudioNode to the given RenderPlan
+	 * @param plan
+	 * @return	Indexes of the operations producing the inputs' buffers
+	 */
+	private int[] compileInputs(RenderPlan.Builder plan) {
+		int[] ops = new int[inputs.size()];
+		for (int i = 0; i < ops.length; i++)
+			ops[i] = inputs.get(i).compile(plan);
+		return ops;
+	}
+
+	/**
+	 * Returns the distance between the centers of this AudioNode and the given one
+	 * @param other
+	 * @return
+	 */
+	public float distanceTo(AudioNode other) {
+		float dx = other.x - x;
+		float dy = other.y - y;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns the ID
+	 * @return
+	 */
+	public int getID() {
+		return id;
+	}
+
+	/**
+	 * Returns the kind constant
+	 * @return
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the current inputs (as arranged by the AudioGraph)
+	 * @return
+	 */
+	public List<AudioNode> getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Returns the maximum number of inputs
+	 * @return
+	 */
+	public int getMaxInputs() {
+		return maxInputs;
+	}
+
+	/**
+	 * Set the position of the Node's center
+	 * @param x
+	 * @param y
+	 */
+	public void setPosition(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Returns the x coordinate of the Node's center
+	 * @return
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the y coordinate of the Node's center
+	 * @return
+	 */
+	public float getY() {
+		return y;
+	}
+
+	/**
+	 * Toggle the arranged flag
+	 * @param b
+	 */
+	public void setArranged(boolean b) {
+		arranged = b;
+	}
+
+	/**
+	 * Returns the arranged flag
+	 * @return
+	 */
+	public boolean isArranged() {
+		return arranged;
+	}
+
+	/**
+	 * Set the algorithm
+	 * @param algorithm
+	 */
+	public void setAlgorithm(AudioAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Returns the algorithm (null for mixing and source AudioNodes)
+	 * @return
+	 */
+	public AudioAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Set the signal source
+	 * @param source
+	 */
+	public void setSource(SignalSource source) {
+		this.source = source;
+	}
+
+	@Override
+	public String toString() {
+		return "AUDIO NODE " + id + " (KIND " + kind + ", " + maxInputs + " INPUTS)";
+	}
+}
@@ -0,0 +1,115 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import de.hsb.ms.syn.common.util.Constants;
+
+/**
+ * Immutable configuration of the audio engine: sample rate, block size
+ * and the time over which changed connections are crossfaded.
+ * The current configuration is process-wide and is read by every algorithm
+ * whenever it (re)calculates sample-rate dependent data. It may only be replaced while
+ * the engine is stopped (see SynthesizerAudioProcessor.restart()), after which the
+ * algorithms have to be reconfigured and the RenderPlan has to be recompiled.
+ * Small blocks trade CPU for latency, large blocks are best for offline rendering
+ * @author Marcel
+ *
+ */
+public class EngineConfig {
+
+	/** Default configuration */
+	public static final EngineConfig DEFAULT = new EngineConfig(Constants.SAMPLING_RATE, Constants.BUFFER_SIZE);
+
+	/** Current configuration */
+	private static volatile EngineConfig current = DEFAULT;
+
+	/** Sample rate in Hz */
+	private final int sampleRate;
+	/** Number of samples per block */
+	private final int blockSize;
+	/** Crossfade time in ms when connections change */
+	private final int crossfadeTime;
+
+	/**
+	 * Constructor (with the default crossfade time)
+	 * @param sampleRate	Sample rate in Hz
+	 * @param blockSize		Number of samples per block
+	 */
+	public EngineConfig(int sampleRate, int blockSize) {
+		this(sampleRate, blockSize, Constants.CROSSFADE_TIME);
+	}
+
+	/**
+	 * Constructor
+	 * @param sampleRate	Sample rate in Hz
+	 * @param blockSize		Number of samples per block
+	 * @param crossfadeTime	Crossfade time in ms when connections change (0: switch instantly)
+	 */
+	public EngineConfig(int sampleRate, int blockSize, int crossfadeTime) {
+		if (sampleRate <= 0 || blockSize <= 0 || crossfadeTime < 0)
+			throw new IllegalArgumentException("Invalid engine configuration: " + sampleRate + " Hz, " + blockSize + " samples, "
+					+ crossfadeTime + " ms crossfade");
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.crossfadeTime = crossfadeTime;
+	}
+
+	/**
+	 * Returns the current configuration
+	 * @return
+	 */
+	public static EngineConfig get() {
+		return current;
+	}
+
+	/**
+	 * Replace the current configuration. Only call this while no audio is being rendered
+	 * @param config
+	 */
+	public static void set(EngineConfig config) {
+		current = config;
+	}
+
+	/**
+	 * Returns the sample rate in Hz
+	 * @return
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Returns the number of samples per block
+	 * @return
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the crossfade time in ms when connections change
+	 * @return
+	 */
+	public int getCrossfadeTime() {
+		return crossfadeTime;
+	}
+
+	/**
+	 * Returns the crossfade time in samples when connections change
+	 * @return
+	 */
+	public int getCrossfadeSamples() {
+		return (int) ((long) crossfadeTime * sampleRate / 1000);
+	}
+
+	/**
+	 * Returns the duration of one block when played back, in nanoseconds
+	 * @return
+	 */
+	public long getBlockNanos() {
+		return (long) blockSize * 1000000000L / sampleRate;
+	}
+
+	@Override
+	public String toString() {
+		return sampleRate + " Hz, " + blockSize + " samples per block, " + crossfadeTime + " ms crossfade";
+	}
+}
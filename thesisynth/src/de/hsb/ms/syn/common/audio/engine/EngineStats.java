@@ -0,0 +1,95 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deadline instrumentation of the audio engine.
+ * The audio thread records how long each block took to compute and whether
+ * the audio device ran dry; any other thread may read the statistics meanwhile.
+ * A block misses its deadline when it takes longer than the time it lasts when played back
+ * @author Marcel
+ *
+ */
+public class EngineStats {
+
+	/** Render time of each block */
+	private final LatencyHistogram renderTimes = new LatencyHistogram();
+
+	/** Number of blocks that missed their deadline */
+	private final AtomicLong deadlineMisses = new AtomicLong();
+	/** Number of times the audio device ran out of samples */
+	private final AtomicLong underruns = new AtomicLong();
+
+	/**
+	 * Record the render time of a block
+	 * @param nanos
+	 */
+	public void recordBlock(long nanos) {
+		renderTimes.record(nanos);
+		if (nanos > getDeadline())
+			deadlineMisses.incrementAndGet();
+	}
+
+	/**
+	 * Record that the audio device ran out of samples
+	 */
+	public void recordUnderrun() {
+		underruns.incrementAndGet();
+	}
+
+	/**
+	 * Returns the histogram of the blocks' render times
+	 * @return
+	 */
+	public LatencyHistogram getRenderTimes() {
+		return renderTimes;
+	}
+
+	/**
+	 * Returns the number of rendered blocks
+	 * @return
+	 */
+	public long getBlocks() {
+		return renderTimes.getCount();
+	}
+
+	/**
+	 * Returns the number of blocks that missed their deadline
+	 * @return
+	 */
+	public long getDeadlineMisses() {
+		return deadlineMisses.get();
+	}
+
+	/**
+	 * Returns the number of underruns of the audio device
+	 * @return
+	 */
+	public long getUnderruns() {
+		return underruns.get();
+	}
+
+	/**
+	 * Returns the deadline of a block in nanoseconds (its duration with the current EngineConfig)
+	 * @return
+	 */
+	public long getDeadline() {
+		return EngineConfig.get().getBlockNanos();
+	}
+
+	/**
+	 * Forget every statistic recorded so far
+	 */
+	public void reset() {
+		renderTimes.reset();
+		deadlineMisses.set(0);
+		underruns.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Block: p50 %d us, p99 %d us, max %d us (deadline %d us)\nMisses: %d / %d, Underruns: %d",
+				renderTimes.getValueAtPercentile(50) / 1000, renderTimes.getValueAtPercentile(99) / 1000,
+				renderTimes.getMax() / 1000, getDeadline() / 1000, getDeadlineMisses(), getBlocks(), getUnderruns());
+	}
+}
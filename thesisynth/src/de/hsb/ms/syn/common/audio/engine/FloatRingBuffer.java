@@ -0,0 +1,88 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of samples.
+ * The producer (e.g. a capture thread) writes blocks of samples into it,
+ * while the consumer (the audio thread) reads them whenever it needs them.
+ * Neither side allocates any objects or blocks the other one: samples that don't fit
+ * are dropped by the producer, and the consumer simply gets fewer samples than it asked for
+ * @author Marcel
+ *
+ */
+public class FloatRingBuffer {
+
+	/** Samples of the ring buffer */
+	private final float[] samples;
+
+	/** Bit mask to wrap a sequence number around to a sample index */
+	private final int mask;
+
+	/** Sequence number of the next sample to be read (written by the consumer only) */
+	private final AtomicLong head = new AtomicLong(0);
+	/** Sequence number of the next sample to be written (written by the producer only) */
+	private final AtomicLong tail = new AtomicLong(0);
+
+	/**
+	 * Constructor
+	 * @param capacity	Number of samples (rounded up to the next power of two)
+	 */
+	public FloatRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.samples = new float[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Write samples into the ring buffer. May only be called by the producer thread
+	 * @param src
+	 * @param offset
+	 * @param length
+	 * @return	Number of written samples (less than length if the ring buffer is full)
+	 */
+	public int write(float[] src, int offset, int length) {
+		long t = tail.get();
+		int n = (int) Math.min(length, samples.length - (t - head.get()));
+		for (int i = 0; i < n; i++)
+			samples[(int) ((t + i) & mask)] = src[offset + i];
+
+		// Publish the samples to the consumer
+		tail.lazySet(t + n);
+		return n;
+	}
+
+	/**
+	 * Read samples from the ring buffer. May only be called by the consumer thread
+	 * @param dst
+	 * @param offset
+	 * @param length
+	 * @return	Number of read samples (less than length if not enough samples are available)
+	 */
+	public int read(float[] dst, int offset, int length) {
+		long h = head.get();
+		int n = (int) Math.min(length, tail.get() - h);
+		for (int i = 0; i < n; i++)
+			dst[offset + i] = samples[(int) ((h + i) & mask)];
+
+		// Release the samples to the producer
+		head.lazySet(h + n);
+		return n;
+	}
+
+	/**
+	 * Returns the number of samples that can be read
+	 * @return
+	 */
+	public int available() {
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Returns the number of samples of this ring buffer
+	 * @return
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
@@ -0,0 +1,399 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread that owns an AudioGraph. Other threads never touch the graph directly:
+ * they submit commands (add, remove, move...), which the arranger applies in order.
+ * After each batch of commands, the graph is arranged and compiled into a new GraphSnapshot,
+ * which replaces the current one with a single atomic swap. The audio thread picks it up
+ * at the start of a block (see acquire()), and the UI draws the connections of the same snapshot,
+ * so neither of them waits for an arrangement or sees a graph that is being changed.
+ * Each snapshot crossfades from the connections of the snapshot the audio thread is playing,
+ * so the audio thread only switches once a crossfade is complete and only to a snapshot
+ * that was compiled against the one it is playing.
+ * Removed AudioNodes are only disposed once the audio thread has settled on a snapshot
+ * that doesn't render them anymore (not even to fade them out)
+ * @author Marcel
+ *
+ */
+public class GraphArranger extends Thread {
+
+	/** Command kinds */
+	private static final int CMD_ADD		= 0;
+	private static final int CMD_REMOVE		= 1;
+	private static final int CMD_CLEAR		= 2;
+	private static final int CMD_MOVE		= 3;
+	private static final int CMD_ARRANGE	= 4;
+	private static final int CMD_RECOMPILE	= 5;
+	private static final int CMD_FLUSH		= 6;
+	private static final int CMD_SHUTDOWN	= 7;
+
+	/** Graph owned by this thread */
+	private final AudioGraph graph;
+
+	/** Commands that haven't been applied yet */
+	private final Queue<Cmd> commands = new ConcurrentLinkedQueue<Cmd>();
+
+	/** Snapshot of the last arrangement */
+	private final AtomicReference<GraphSnapshot> snapshot = new AtomicReference<GraphSnapshot>();
+	/** Snapshot the audio thread is playing */
+	private volatile GraphSnapshot playing;
+	/** Flag set by the audio thread if the last snapshot wasn't compiled against the one it is playing */
+	private volatile boolean stale;
+	/** Sequence number of the playing snapshot, set by the audio thread once it is done crossfading */
+	private volatile long settled;
+	/** Sequence number of the next snapshot */
+	private long serial = 0;
+
+	/** Removed AudioNodes that haven't been disposed yet */
+	private final List<AudioNode> retired = new ArrayList<AudioNode>();
+	/** Sequence number of the first snapshot without each retired AudioNode */
+	private final List<Long> retiredAt = new ArrayList<Long>();
+
+	/**
+	 * Constructor. The graph is arranged and compiled once on the calling thread,
+	 * so that there is a snapshot right from the start
+	 * @param graph	Graph to arrange (must not be used by any other thread from now on)
+	 */
+	public GraphArranger(AudioGraph graph) {
+		super("thesisynth-arranger");
+		setDaemon(true);
+		this.graph = graph;
+		graph.arrange();
+		playing = new GraphSnapshot(graph, graph.compile(), serial++, null);
+		snapshot.set(playing);
+		settled = playing.getSerial();
+	}
+
+	/**
+	 * Returns the snapshot of the last arrangement
+	 * @return
+	 */
+	public GraphSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * Returns the snapshot to render the next block with.
+	 * This switches to the last snapshot if the one being played is done crossfading and the last one
+	 * was compiled against it. Otherwise the arranger is asked to compile it again against the one being played.
+	 * May only be called by the thread that renders the audio
+	 * @return
+	 */
+	public GraphSnapshot acquire() {
+		GraphSnapshot current = playing;
+		if (current.isFading())
+			return current;
+
+		// Let the arranger dispose the AudioNodes that aren't rendered anymore
+		if (settled != current.getSerial()) {
+			settled = current.getSerial();
+			LockSupport.unpark(this);
+		}
+
+		GraphSnapshot next = snapshot.get();
+		if (next == current)
+			return current;
+
+		if (next.getBaseSerial() != current.getSerial()) {
+			if (!stale) {
+				stale = true;
+				LockSupport.unpark(this);
+			}
+			return current;
+		}
+		playing = next;
+		return next;
+	}
+
+	/**
+	 * Play the last snapshot right away, without crossfading to it.
+	 * May only be called while no audio is being rendered, after flush()
+	 * (e.g. once the block size has changed, or before an offline render)
+	 */
+	public void reset() {
+		GraphSnapshot latest = snapshot.get();
+		latest.finishTransition();
+		playing = latest;
+		settled = latest.getSerial();
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Add an AudioNode at the given position
+	 * @param n
+	 * @param x
+	 * @param y
+	 */
+	public void add(AudioNode n, float x, float y) {
+		this.submit(new Cmd(CMD_ADD, n, x, y));
+	}
+
+	/**
+	 * Remove an AudioNode
+	 * @param n
+	 */
+	public void remove(AudioNode n) {
+		this.submit(new Cmd(CMD_REMOVE, n, 0, 0));
+	}
+
+	/**
+	 * Remove every AudioNode but the center
+	 */
+	public void clear() {
+		this.submit(new Cmd(CMD_CLEAR, null, 0, 0));
+	}
+
+	/**
+	 * Move an AudioNode to the given position. Moves that don't change
+	 * any connection don't produce a new snapshot
+	 * @param n
+	 * @param x
+	 * @param y
+	 */
+	public void move(AudioNode n, float x, float y) {
+		this.submit(new Cmd(CMD_MOVE, n, x, y));
+	}
+
+	/**
+	 * Re-arrange every AudioNode
+	 */
+	public void arrange() {
+		this.submit(new Cmd(CMD_ARRANGE, null, 0, 0));
+	}
+
+	/**
+	 * Compile the graph into a new snapshot without re-arranging it
+	 * (e.g. after the block size has changed)
+	 */
+	public void recompile() {
+		this.submit(new Cmd(CMD_RECOMPILE, null, 0, 0));
+	}
+
+	/**
+	 * Wait until every command submitted so far has been applied and published
+	 */
+	public void flush() {
+		Cmd cmd = new Cmd(CMD_FLUSH, null, 0, 0);
+		this.submit(cmd);
+		try {
+			cmd.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stop the arranger after the commands submitted so far
+	 */
+	public void shutdown() {
+		this.submit(new Cmd(CMD_SHUTDOWN, null, 0, 0));
+		try {
+			this.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queue a command and wake the arranger up
+	 * @param cmd
+	 */
+	private void submit(Cmd cmd) {
+		commands.add(cmd);
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Run implementation
+	 */
+	public void run() {
+		List<Cmd> batch = new ArrayList<Cmd>();
+		boolean running = true;
+		while (running) {
+			for (Cmd cmd = commands.poll(); cmd != null; cmd = commands.poll())
+				batch.add(cmd);
+			this.disposeRetired(settled);
+			boolean rebase = stale;
+			if (batch.isEmpty() && !rebase) {
+				LockSupport.park(this);
+				continue;
+			}
+			stale = false;
+			running = this.apply(batch, rebase);
+			batch.clear();
+		}
+
+		// No more audio is rendered after shutdown()
+		this.disposeRetired(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Dispose the retired AudioNodes that aren't part of the given snapshot or any earlier one
+	 * @param upTo	Sequence number of a snapshot
+	 */
+	private void disposeRetired(long upTo) {
+		for (int i = retired.size() - 1; i >= 0; i--) {
+			if (retiredAt.get(i) <= upTo) {
+				retired.remove(i).dispose();
+				retiredAt.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Apply a batch of commands and publish the resulting snapshot
+	 * @param batch
+	 * @param rebase	true to publish a new snapshot even if nothing has changed, compiled against the one being played
+	 * @return	false if the arranger has been shut down
+	 */
+	private boolean apply(List<Cmd> batch, boolean rebase) {
+		boolean running = true;
+		boolean arrange = false;
+		boolean compile = rebase;
+		// AudioNodes moved by this batch (only the last position of each counts)
+		Map<AudioNode, Cmd> moved = new IdentityHashMap<AudioNode, Cmd>();
+		List<CountDownLatch> flushed = new ArrayList<CountDownLatch>();
+		// AudioNodes removed by this batch
+		List<AudioNode> removed = new ArrayList<AudioNode>();
+
+		for (Cmd cmd : batch) {
+			switch (cmd.kind) {
+			case CMD_ADD:
+				cmd.node.setPosition(cmd.x, cmd.y);
+				graph.add(cmd.node);
+				arrange = true;
+				break;
+			case CMD_REMOVE:
+				if (graph.remove(cmd.node))
+					removed.add(cmd.node);
+				moved.remove(cmd.node);
+				arrange = true;
+				break;
+			case CMD_CLEAR:
+				removed.addAll(graph.getNodes());
+				graph.clear();
+				moved.clear();
+				arrange = true;
+				break;
+			case CMD_MOVE:
+				moved.put(cmd.node, cmd);
+				break;
+			case CMD_ARRANGE:
+				arrange = true;
+				break;
+			case CMD_RECOMPILE:
+				compile = true;
+				break;
+			case CMD_FLUSH:
+				flushed.add(cmd.done);
+				break;
+			default:
+				running = false;
+				break;
+			}
+		}
+
+		// Only AudioNodes that are still part of the graph are moved
+		for (Iterator<Cmd> it = moved.values().iterator(); it.hasNext();) {
+			Cmd cmd = it.next();
+			if (graph.get(cmd.node.getID()) == cmd.node)
+				cmd.node.setPosition(cmd.x, cmd.y);
+			else
+				it.remove();
+		}
+
+		if (arrange) {
+			graph.arrange();
+			compile = true;
+		} else if (moved.size() == 1) {
+			// A single dragged AudioNode rarely changes any connection
+			compile |= graph.rearrange(moved.keySet().iterator().next());
+		} else if (!moved.isEmpty()) {
+			compile |= this.arrangeAndCompare();
+		}
+
+		if (compile)
+			snapshot.set(new GraphSnapshot(graph, graph.compile(), serial++, playing));
+
+		// The snapshot that has just been published is the first one without the removed AudioNodes
+		for (AudioNode n : removed) {
+			retired.add(n);
+			retiredAt.add(serial - 1);
+		}
+
+		for (CountDownLatch done : flushed)
+			done.countDown();
+		return running;
+	}
+
+	/**
+	 * Re-arrange every AudioNode and check if any connection has changed
+	 * @return
+	 */
+	private boolean arrangeAndCompare() {
+		GraphSnapshot old = snapshot.get();
+		graph.arrange();
+
+		if (!this.sameInputs(graph.getCenter(), old))
+			return true;
+		for (AudioNode n : graph.getNodes()) {
+			if (!this.sameInputs(n, old))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the inputs of the given AudioNode are the same as in the given snapshot
+	 * @param n
+	 * @param old
+	 * @return
+	 */
+	private boolean sameInputs(AudioNode n, GraphSnapshot old) {
+		AudioNode[] before = old.getInputs(n);
+		if (!n.isArranged() && n != graph.getCenter())
+			return before.length == 0;
+		List<AudioNode> now = n.getInputs();
+		if (now.size() != before.length)
+			return false;
+		for (int i = 0; i < before.length; i++) {
+			if (now.get(i) != before[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Command submitted to the arranger
+	 * @author Marcel
+	 *
+	 */
+	private static class Cmd {
+
+		private final int kind;
+		private final AudioNode node;
+		private final float x;
+		private final float y;
+		/** Counted down once a flush command has been applied */
+		private final CountDownLatch done;
+
+		public Cmd(int kind, AudioNode node, float x, float y) {
+			this.kind = kind;
+			this.node = node;
+			this.x = x;
+			this.y = y;
+			this.done = (kind == CMD_FLUSH) ? new CountDownLatch(1) : null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of an arranged AudioGraph: the AudioNodes it contained,
+ * the connections between them and the RenderPlan compiled from them.
+ * Snapshots are created by the GraphArranger and published as a whole,
+ * so any thread may read one while the next arrangement is being computed.
+ * If the connections differ from those of the snapshot that is being played, a transition plan
+ * is compiled as well: for the crossfade time of the EngineConfig, it fades the new connections in
+ * and the old ones out, and getPlan() returns it instead of the plan of the new connections
+ * @author Marcel
+ *
+ */
+public class GraphSnapshot {
+
+	/** Inputs of AudioNodes that aren't connected to anything */
+	private static final AudioNode[] NO_INPUTS = new AudioNode[0];
+
+	/** AudioNodes by ID (without the center) */
+	private final Map<Integer, AudioNode> nodes;
+
+	/** Inputs of each connected AudioNode */
+	private final Map<AudioNode, AudioNode[]> inputs;
+
+	/** Plan compiled from the connections */
+	private final RenderPlan plan;
+	/** Plan crossfading from the connections of the base snapshot (null if none have changed) */
+	private final RenderPlan transition;
+
+	/** Sequence number of this snapshot */
+	private final long serial;
+	/** Sequence number of the snapshot this one crossfades from (-1 if there is none) */
+	private final long baseSerial;
+
+	/**
+	 * Constructor
+	 * @param graph		Arranged graph (only read during construction)
+	 * @param plan		Plan compiled from the graph
+	 * @param serial	Sequence number of this snapshot
+	 * @param base		Snapshot that is being played, which this one replaces (null if there is none)
+	 */
+	public GraphSnapshot(AudioGraph graph, RenderPlan plan, long serial, GraphSnapshot base) {
+		this.plan = plan;
+		this.serial = serial;
+		this.baseSerial = (base == null) ? -1 : base.serial;
+
+		Map<Integer, AudioNode> nodes = new HashMap<Integer, AudioNode>();
+		Map<AudioNode, AudioNode[]> inputs = new IdentityHashMap<AudioNode, AudioNode[]>();
+		this.addInputs(graph.getCenter(), inputs);
+		for (AudioNode n : graph.getNodes()) {
+			nodes.put(n.getID(), n);
+			if (n.isArranged())
+				this.addInputs(n, inputs);
+		}
+		this.nodes = Collections.unmodifiableMap(nodes);
+		this.inputs = inputs;
+
+		if (base != null && !this.sameConnections(base)) {
+			RenderPlan.Builder builder = new RenderPlan.Builder();
+			graph.getCenter().compile(builder, this, base);
+			this.transition = builder.build();
+		} else {
+			this.transition = null;
+		}
+	}
+
+	/**
+	 * Checks if the given snapshot has the same connections as this one
+	 * @param other
+	 * @return
+	 */
+	private boolean sameConnections(GraphSnapshot other) {
+		if (inputs.size() != other.inputs.size())
+			return false;
+		for (Map.Entry<AudioNode, AudioNode[]> e : inputs.entrySet())
+			if (!Arrays.equals(e.getValue(), other.getInputs(e.getKey())))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Copy the inputs of the given AudioNode into the given map
+	 * @param n
+	 * @param inputs
+	 */
+	private void addInputs(AudioNode n, Map<AudioNode, AudioNode[]> inputs) {
+		List<AudioNode> list = n.getInputs();
+		if (!list.isEmpty())
+			inputs.put(n, list.toArray(new AudioNode[list.size()]));
+	}
+
+	/**
+	 * Returns the RenderPlan to render the next block with:
+	 * the transition plan while it is still fading, the plan of the connections afterwards
+	 * @return
+	 */
+	public RenderPlan getPlan() {
+		return this.isFading() ? transition : plan;
+	}
+
+	/**
+	 * Checks if the transition plan is still fading
+	 * @return
+	 */
+	public boolean isFading() {
+		RenderPlan t = transition;
+		return t != null && t.isFading();
+	}
+
+	/**
+	 * Skip the rest of the transition, so that getPlan() returns the plan of the connections.
+	 * May only be called while this snapshot isn't being rendered
+	 */
+	public void finishTransition() {
+		if (transition != null)
+			transition.finishFades();
+	}
+
+	/**
+	 * Returns the sequence number of this snapshot
+	 * @return
+	 */
+	public long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Returns the sequence number of the snapshot this one crossfades from (-1 if there is none)
+	 * @return
+	 */
+	public long getBaseSerial() {
+		return baseSerial;
+	}
+
+	/**
+	 * Returns the AudioNode with the given ID, or null
+	 * @param id
+	 * @return
+	 */
+	public AudioNode get(int id) {
+		return nodes.get(id);
+	}
+
+	/**
+	 * Returns each AudioNode (without the center)
+	 * @return
+	 */
+	public Collection<AudioNode> getNodes() {
+		return nodes.values();
+	}
+
+	/**
+	 * Returns the inputs of the given AudioNode. The array must not be modified
+	 * @param n
+	 * @return
+	 */
+	public AudioNode[] getInputs(AudioNode n) {
+		AudioNode[] in = inputs.get(n);
+		return (in == null) ? NO_INPUTS : in;
+	}
+}
@@ -0,0 +1,139 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with a bounded relative error,
+ * in the style of an HDR histogram: below 2^SUB_BITS every value has its own bucket,
+ * above that each power of two is split into 2^(SUB_BITS - 1) linear sub-buckets.
+ * Recording never allocates or blocks, so it may be called by the audio thread
+ * while any other thread reads percentiles from it
+ * @author Marcel
+ *
+ */
+public class LatencyHistogram {
+
+	/** Number of bits resolving each power of two (relative error of about 1 / 2^(SUB_BITS - 1)) */
+	private static final int SUB_BITS		= 5;
+	/** Number of sub-buckets of the first, linear range */
+	private static final int SUB_COUNT		= 1 << SUB_BITS;
+	/** Number of sub-buckets of each power of two above the linear range */
+	private static final int HALF_COUNT		= SUB_COUNT / 2;
+	/** Highest power of two that can be recorded (2^40 ns is about 18 minutes) */
+	private static final int MAX_MAGNITUDE	= 40;
+	/** Highest value that can be recorded, larger ones are clamped */
+	private static final long MAX_VALUE		= (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+	/** Count of each bucket */
+	private final AtomicLongArray counts;
+
+	/** Total number of recorded values */
+	private final AtomicLong total = new AtomicLong();
+	/** Sum of the recorded values */
+	private final AtomicLong sum = new AtomicLong();
+	/** Highest recorded value */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Constructor
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+	}
+
+	/**
+	 * Record a duration
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+		counts.incrementAndGet(bucketIndex(value));
+		total.incrementAndGet();
+		sum.addAndGet(value);
+		long m = max.get();
+		while (value > m && !max.compareAndSet(m, value))
+			m = max.get();
+	}
+
+	/**
+	 * Returns the duration below which the given percentage of the recorded values lie
+	 * (the upper bound of the bucket in question), or 0 if nothing has been recorded
+	 * @param percentile	[0:100]
+	 * @return
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = total.get();
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the number of recorded values
+	 * @return
+	 */
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values
+	 * @return
+	 */
+	public double getMean() {
+		long count = total.get();
+		return (count == 0) ? 0 : (double) sum.get() / count;
+	}
+
+	/**
+	 * Returns the highest recorded value
+	 * @return
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Forget every recorded value. Values recorded concurrently may or may not survive
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++)
+			counts.set(i, 0);
+		total.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Returns the index of the bucket of the given value
+	 * @param value
+	 * @return
+	 */
+	private static int bucketIndex(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS + 1;
+		int top = (int) (value >>> shift);
+		return SUB_COUNT + (shift - 1) * HALF_COUNT + (top - HALF_COUNT);
+	}
+
+	/**
+	 * Returns the highest value that falls into the bucket with the given index
+	 * @param index
+	 * @return
+	 */
+	private static long upperBound(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int shift = (index - SUB_COUNT) / HALF_COUNT + 1;
+		long top = (index - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,136 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Renders a RenderPlan faster than real time and streams the result
+ * to a 16 bit mono WAV file. Blocks are rendered as fast as the CPU allows
+ * and written through a buffered NIO channel, using the sample rate of the current EngineConfig
+ * @author Marcel
+ *
+ */
+public class OfflineRenderer {
+
+	/** Size of the WAV header in bytes */
+	private static final int HEADER_SIZE = 44;
+
+	/** Size of the output buffer in bytes */
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+	/** Plan to render */
+	private RenderPlan plan;
+
+	/** Duration of the last render in nanoseconds */
+	private long elapsed;
+
+	/** Number of samples written during the last render */
+	private long samples;
+	/** Sample rate of the last render */
+	private int rate;
+
+	/**
+	 * Constructor
+	 * @param plan
+	 */
+	public OfflineRenderer(RenderPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Render the given amount of audio to the given WAV file
+	 * @param file		Output file (overwritten if it exists)
+	 * @param seconds	Duration of the rendered audio
+	 * @return			The achieved realtime factor (seconds of audio per second of rendering)
+	 * @throws IOException
+	 */
+	public float render(File file, float seconds) throws IOException {
+		EngineConfig config = EngineConfig.get();
+		rate = config.getSampleRate();
+		long blocks = (long) Math.ceil(seconds * rate / config.getBlockSize());
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer out = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			// Leave room for the header, it is written once the size is known
+			channel.position(HEADER_SIZE);
+
+			samples = 0;
+			long start = System.nanoTime();
+			for (long b = 0; b < blocks; b++) {
+				float[] block = plan.render();
+				for (int i = 0; i < block.length; i++) {
+					if (out.remaining() < 2)
+						flush(out, channel);
+					float s = Math.max(Math.min(block[i], 1f), -1f);
+					out.putShort((short) (s * Short.MAX_VALUE));
+				}
+				samples += block.length;
+			}
+			flush(out, channel);
+			elapsed = System.nanoTime() - start;
+
+			// Write the header
+			writeHeader(out, rate, samples * 2);
+			channel.write(out, 0);
+		} finally {
+			raf.close();
+		}
+
+		return this.getRealtimeFactor();
+	}
+
+	/**
+	 * Returns the realtime factor of the last render
+	 * @return
+	 */
+	public float getRealtimeFactor() {
+		if (elapsed == 0) return 0;
+		double audio = (double) samples / rate;
+		return (float) (audio / (elapsed / 1e9));
+	}
+
+	/**
+	 * Write the pending bytes of the buffer to the channel
+	 * @param out
+	 * @param channel
+	 * @throws IOException
+	 */
+	private static void flush(ByteBuffer out, FileChannel channel) throws IOException {
+		out.flip();
+		while (out.hasRemaining())
+			channel.write(out);
+		out.clear();
+	}
+
+	/**
+	 * Put a canonical PCM WAV header into the (cleared) buffer and flip it
+	 * @param out
+	 * @param rate		Sample rate
+	 * @param dataSize	Size of the sample data in bytes
+	 */
+	private static void writeHeader(ByteBuffer out, int rate, long dataSize) {
+		out.clear();
+		out.put(new byte[] { 'R', 'I', 'F', 'F' });
+		out.putInt((int) (36 + dataSize));
+		out.put(new byte[] { 'W', 'A', 'V', 'E' });
+		out.put(new byte[] { 'f', 'm', 't', ' ' });
+		out.putInt(16);								// Size of the fmt chunk
+		out.putShort((short) 1);					// PCM
+		out.putShort((short) 1);					// Mono
+		out.putInt(rate);							// Sample rate
+		out.putInt(rate * 2);						// Byte rate
+		out.putShort((short) 2);					// Block align
+		out.putShort((short) 16);					// Bits per sample
+		out.put(new byte[] { 'd', 'a', 't', 'a' });
+		out.putInt((int) dataSize);
+		out.flip();
+	}
+}
@@ -0,0 +1,124 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of parameter changes.
+ * The producer (usually the thread processing NetMessages) offers changes,
+ * while the consumer (the audio thread) drains them at the start of each block.
+ * Each change is stored in preallocated primitive slots, so neither side
+ * allocates any objects or blocks the other one
+ * @author Marcel
+ *
+ */
+public class ParameterChangeQueue {
+
+	/**
+	 * Callback interface for the consumer of a ParameterChangeQueue
+	 * @author Marcel
+	 *
+	 */
+	public static interface Listener {
+		/**
+		 * Called for each drained parameter change, in the order they were offered
+		 * @param nodeId	ID of the Node whose algorithm is affected
+		 * @param paramId	Property key of the changed parameter
+		 * @param value		New value of the parameter
+		 */
+		public void onParameterChange(int nodeId, int paramId, float value);
+	}
+
+	/** Default number of slots */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** Slots of the ring buffer */
+	private final int[] nodeIds;
+	private final int[] paramIds;
+	private final float[] values;
+
+	/** Bit mask to wrap a sequence number around to a slot index */
+	private final int mask;
+
+	/** Sequence number of the next slot to be read (written by the consumer only) */
+	private final AtomicLong head = new AtomicLong(0);
+	/** Sequence number of the next slot to be written (written by the producer only) */
+	private final AtomicLong tail = new AtomicLong(0);
+
+	/**
+	 * Constructor using the default capacity
+	 */
+	public ParameterChangeQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity	Number of slots (rounded up to the next power of two)
+	 */
+	public ParameterChangeQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.nodeIds = new int[size];
+		this.paramIds = new int[size];
+		this.values = new float[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Offer a parameter change to the queue. May only be called by the producer thread
+	 * @param nodeId
+	 * @param paramId
+	 * @param value
+	 * @return	false if the queue is full and the change was rejected
+	 */
+	public boolean offer(int nodeId, int paramId, float value) {
+		long t = tail.get();
+		if (t - head.get() > mask)
+			return false;
+
+		int i = (int) (t & mask);
+		nodeIds[i] = nodeId;
+		paramIds[i] = paramId;
+		values[i] = value;
+
+		// Publish the slot to the consumer
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Hand every pending parameter change to the given listener.
+	 * May only be called by the consumer thread
+	 * @param listener
+	 * @return	Number of drained changes
+	 */
+	public int drain(Listener listener) {
+		long h = head.get();
+		long t = tail.get();
+		if (h == t) return 0;
+
+		for (long s = h; s < t; s++) {
+			int i = (int) (s & mask);
+			listener.onParameterChange(nodeIds[i], paramIds[i], values[i]);
+		}
+
+		// Release the slots to the producer
+		head.lazySet(t);
+		return (int) (t - h);
+	}
+
+	/**
+	 * Returns true if there are no pending changes
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return head.get() == tail.get();
+	}
+
+	/**
+	 * Returns the number of slots of this queue
+	 * @return
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
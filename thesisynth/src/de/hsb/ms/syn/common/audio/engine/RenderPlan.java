@@ -0,0 +1,565 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+import de.hsb.ms.syn.common.util.DspKernels;
+
+/**
+ * Flat, topologically ordered execution plan of a Node graph.
+ * Instead of recursively asking each Node to fill its buffer, the audio thread
+ * runs through an array of operations in a tight loop. Every operation writes into
+ * a buffer slot that was assigned when the plan was compiled, and slots are reused
+ * as soon as their contents have been consumed. An operation whose output is consumed
+ * by several others is still executed only once per block; its slot is kept until
+ * the last consumer has read it.
+ * Every slot carries a flag if it only holds silence. Mixes skip silent inputs, and
+ * algorithms that are asleep (see AudioAlgorithm.isAsleep()) aren't executed at all,
+ * so idle parts of the graph cost next to nothing.
+ * The inputs of the last operation (the "branches" of the plan) never share any slots,
+ * so that they may be rendered in parallel before the last operation mixes them.
+ * A transition plan fades some inputs in or out over the crossfade time of the EngineConfig,
+ * so that connections that appear or disappear when the graph is re-arranged don't click
+ * (see GraphSnapshot). Plans without fading inputs don't pay anything for this.
+ * Plans are created with a RenderPlan.Builder and are immutable afterwards
+ * @author Marcel
+ *
+ */
+public class RenderPlan {
+
+	/* Operation constants */
+
+	/** Operation: Let a Gen algorithm fill the slot */
+	public static final int OP_GENERATOR	= 0;
+	/** Operation: Mix the input slots and apply an Fx algorithm */
+	public static final int OP_EFFECT		= 1;
+	/** Operation: Mix the input slots */
+	public static final int OP_MIX			= 2;
+	/** Operation: Copy the block of a SignalSource into the slot */
+	public static final int OP_SOURCE		= 3;
+
+	/* Fade constants */
+
+	/** Fade: The input is mixed in at full level */
+	public static final int FADE_NONE		= 0;
+	/** Fade: The input is a new connection and rises from silence */
+	public static final int FADE_IN			= 1;
+	/** Fade: The input is a connection that is going away and falls to silence */
+	public static final int FADE_OUT		= 2;
+
+	/** Kind of each operation */
+	private final int[] kinds;
+	/** Algorithm of each operation (OP_GENERATOR and OP_EFFECT only) */
+	private final AudioAlgorithm[] algorithms;
+	/** Signal source of each operation (OP_SOURCE only) */
+	private final SignalSource[] sources;
+	/** Input slots of each operation. The first one is also the output slot of mixing operations */
+	private final int[][] inputSlots;
+	/** Output slot of each operation */
+	private final int[] outputSlots;
+	/** Flag for each mixing operation if its first input has to be copied into its output slot */
+	private final boolean[] copiesFirst;
+	/** Fade of each input of each operation (null if the plan doesn't fade, or for operations without fading inputs) */
+	private final int[][] fades;
+	/** Length of the fades in samples */
+	private final int fadeLength;
+	/** Number of samples rendered since the fades started */
+	private int fadePosition;
+
+	/** First and last operation of each independent branch (empty if the plan can't be split) */
+	private final int[] branchStarts;
+	private final int[] branchEnds;
+
+	/** Buffer slots */
+	private final float[][] slots;
+	/** Flag for each buffer slot if it holds nothing but zeros */
+	private final boolean[] silent;
+
+	/**
+	 * Constructor (use RenderPlan.Builder)
+	 */
+	private RenderPlan(int[] kinds, AudioAlgorithm[] algorithms, SignalSource[] sources,
+			int[][] inputSlots, int[] outputSlots, boolean[] copiesFirst, int[][] fades, int slotCount,
+			int[] branchStarts, int[] branchEnds) {
+		this.kinds = kinds;
+		this.algorithms = algorithms;
+		this.sources = sources;
+		this.inputSlots = inputSlots;
+		this.outputSlots = outputSlots;
+		this.copiesFirst = copiesFirst;
+		this.fades = fades;
+		this.fadeLength = EngineConfig.get().getCrossfadeSamples();
+		this.branchStarts = branchStarts;
+		this.branchEnds = branchEnds;
+		this.slots = new float[Math.max(slotCount, 1)][EngineConfig.get().getBlockSize()];
+		this.silent = new boolean[slots.length];
+		Arrays.fill(silent, true);
+	}
+
+	/**
+	 * Execute the plan and return the buffer of its last operation
+	 * @return
+	 */
+	public float[] render() {
+		this.run(0, kinds.length);
+		this.advanceFades();
+		return this.output();
+	}
+
+	/**
+	 * Execute the operations of one independent branch. Different branches
+	 * may be rendered concurrently by different threads
+	 * @param branch	Branch index [0:branchCount()[
+	 */
+	public void renderBranch(int branch) {
+		this.run(branchStarts[branch], branchEnds[branch] + 1);
+	}
+
+	/**
+	 * Execute the last operation, once every branch has been rendered,
+	 * and return its buffer
+	 * @return
+	 */
+	public float[] renderOutput() {
+		this.run(kinds.length - 1, kinds.length);
+		this.advanceFades();
+		return this.output();
+	}
+
+	/**
+	 * Returns the number of independent branches of this plan
+	 * (0 if it can only be rendered serially)
+	 * @return
+	 */
+	public int branchCount() {
+		return branchStarts.length;
+	}
+
+	/**
+	 * Returns the number of operations of the given independent branch
+	 * @param branch	Branch index [0:branchCount()[
+	 * @return
+	 */
+	public int branchSize(int branch) {
+		return branchEnds[branch] - branchStarts[branch] + 1;
+	}
+
+	/**
+	 * Checks if this plan is still fading any inputs in or out.
+	 * Once it is done, it sounds just like the plan compiled without the fades
+	 * @return
+	 */
+	public boolean isFading() {
+		return fades != null && fadePosition < fadeLength;
+	}
+
+	/**
+	 * Complete the fades at once. Must not be called while the plan is being rendered
+	 */
+	public void finishFades() {
+		fadePosition = fadeLength;
+	}
+
+	/**
+	 * Advance the fades by one block (after all of its operations have been executed)
+	 */
+	private void advanceFades() {
+		if (fades != null && fadePosition < fadeLength)
+			fadePosition += slots[0].length;
+	}
+
+	/**
+	 * Returns the level of an input with the given fade after the given number of samples of the fade
+	 * @param fade
+	 * @param position
+	 * @return
+	 */
+	private float fadeLevel(int fade, int position) {
+		if (fade == FADE_NONE)
+			return 1f;
+		float t = (position >= fadeLength) ? 1f : (float) position / fadeLength;
+		return (fade == FADE_IN) ? t : 1f - t;
+	}
+
+	/**
+	 * Returns the buffer of the last operation
+	 * @return
+	 */
+	private float[] output() {
+		if (kinds.length == 0) {
+			this.silence(0);
+			return slots[0];
+		}
+		return slots[outputSlots[kinds.length - 1]];
+	}
+
+	/**
+	 * Execute the operations in [from:to[
+	 * @param from
+	 * @param to
+	 */
+	private void run(int from, int to) {
+		for (int k = from; k < to; k++) {
+			int o = outputSlots[k];
+			float[] out = slots[o];
+			switch (kinds[k]) {
+			case OP_GENERATOR:
+				if (algorithms[k].isAsleep(true)) {
+					this.silence(o);
+					algorithms[k].skipBlock(out.length);
+				} else {
+					algorithms[k].fillGenBuffer(out);
+					silent[o] = false;
+				}
+				break;
+			case OP_SOURCE:
+				System.arraycopy(sources[k].fillBuffer(), 0, out, 0, out.length);
+				silent[o] = false;
+				break;
+			default:
+				int[] in = inputSlots[k];
+				// Find the first input that isn't silent
+				int first = 0;
+				while (first < in.length && silent[in[first]])
+					first++;
+
+				if (first == in.length) {
+					// Nothing but silence coming in
+					this.silence(o);
+				} else if (fades != null && fades[k] != null) {
+					this.mixFading(k, first, out);
+					silent[o] = false;
+				} else {
+					// The output slot holds the first input (unless it is shared or silent), add the other ones on top
+					if (first > 0 || copiesFirst[k])
+						System.arraycopy(slots[in[first]], 0, out, 0, out.length);
+					for (int j = first + 1; j < in.length; j++)
+						if (!silent[in[j]])
+							DspKernels.addClamped(out, slots[in[j]], out.length);
+					silent[o] = false;
+				}
+
+				if (kinds[k] == OP_EFFECT) {
+					if (algorithms[k].isAsleep(silent[o])) {
+						algorithms[k].skipBlock(out.length);
+					} else {
+						algorithms[k].fillFXBuffer(out);
+						silent[o] = false;
+					}
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Mix the inputs of an operation with fading inputs, ramping the level of each fading input across the block
+	 * @param k		Operation
+	 * @param first	First input that isn't silent
+	 * @param out	Output slot of the operation
+	 */
+	private void mixFading(int k, int first, float[] out) {
+		int[] in = inputSlots[k];
+		int[] fade = fades[k];
+		int n = out.length;
+		int end = fadePosition + n;
+
+		// The first input is scaled into the output slot (in place, unless it is shared or silent)
+		float[] src = (first > 0 || copiesFirst[k]) ? slots[in[first]] : out;
+		if (fade[first] == FADE_NONE) {
+			if (src != out)
+				System.arraycopy(src, 0, out, 0, n);
+		} else {
+			DspKernels.gainRamp(out, src, this.fadeLevel(fade[first], fadePosition), this.fadeLevel(fade[first], end), n);
+		}
+
+		for (int j = first + 1; j < in.length; j++) {
+			if (silent[in[j]]) continue;
+			if (fade[j] == FADE_NONE)
+				DspKernels.addClamped(out, slots[in[j]], n);
+			else
+				DspKernels.addRampedClamped(out, slots[in[j]], this.fadeLevel(fade[j], fadePosition), this.fadeLevel(fade[j], end), n);
+		}
+	}
+
+	/**
+	 * Fill the given slot with zeros, unless it holds nothing but zeros already
+	 * @param slot
+	 */
+	private void silence(int slot) {
+		if (!silent[slot]) {
+			Arrays.fill(slots[slot], 0f);
+			silent[slot] = true;
+		}
+	}
+
+	/**
+	 * Returns the number of operations of this plan
+	 * @return
+	 */
+	public int size() {
+		return kinds.length;
+	}
+
+	/**
+	 * Returns the number of buffer slots used by this plan
+	 * @return
+	 */
+	public int slotCount() {
+		return slots.length;
+	}
+
+	/**
+	 * Builder for RenderPlan objects. Operations have to be added in topological order,
+	 * i.e. every operation after all of its inputs. Each operation is identified by the
+	 * index returned when adding it, and its output may be used as the input of any number
+	 * of later operations. The last operation that is added is the output of the plan
+	 * @author Marcel
+	 *
+	 */
+	public static class Builder {
+
+		private List<Integer> kinds = new ArrayList<Integer>();
+		private List<AudioAlgorithm> algorithms = new ArrayList<AudioAlgorithm>();
+		private List<SignalSource> sources = new ArrayList<SignalSource>();
+		private List<int[]> inputs = new ArrayList<int[]>();
+		private List<int[]> fades = new ArrayList<int[]>();
+
+		/** Operation of each object that has been added already (see lookup()) */
+		private Map<Object, Integer> added = new IdentityHashMap<Object, Integer>();
+		/** Objects whose inputs are being added right now (see open()) */
+		private Map<Object, Boolean> open = new IdentityHashMap<Object, Boolean>();
+
+		/**
+		 * Returns the operation that was remembered for the given object, or -1.
+		 * This lets an object that is reachable on several paths be added only once
+		 * @param owner
+		 * @return
+		 */
+		public int lookup(Object owner) {
+			Integer op = added.get(owner);
+			return (op == null) ? -1 : op;
+		}
+
+		/**
+		 * Remember the operation that was added for the given object
+		 * @param owner
+		 * @param op
+		 * @return	op
+		 */
+		public int remember(Object owner, int op) {
+			open.remove(owner);
+			added.put(owner, op);
+			return op;
+		}
+
+		/**
+		 * Mark the given object as open, i.e. its inputs are being added right now.
+		 * The mark is removed by remember() or close()
+		 * @param owner
+		 */
+		public void open(Object owner) {
+			open.put(owner, Boolean.TRUE);
+		}
+
+		/**
+		 * Remove the open mark of the given object without remembering an operation for it
+		 * @param owner
+		 */
+		public void close(Object owner) {
+			open.remove(owner);
+		}
+
+		/**
+		 * Checks if the given object is open. Adding it again would form a loop
+		 * @param owner
+		 * @return
+		 */
+		public boolean isOpen(Object owner) {
+			return open.containsKey(owner);
+		}
+
+		/**
+		 * Add a Gen algorithm
+		 * @param algorithm
+		 * @return	Index of the operation
+		 */
+		public int addGenerator(AudioAlgorithm algorithm) {
+			return this.add(OP_GENERATOR, algorithm, null, new int[0], null);
+		}
+
+		/**
+		 * Add an Fx algorithm that processes the mix of the given operations
+		 * @param algorithm
+		 * @param inputOps
+		 * @return	Index of the operation
+		 */
+		public int addEffect(AudioAlgorithm algorithm, int[] inputOps) {
+			return this.add(OP_EFFECT, algorithm, null, inputOps, null);
+		}
+
+		/**
+		 * Add an Fx algorithm that processes the mix of the given operations, fading some of them
+		 * @param algorithm
+		 * @param inputOps
+		 * @param inputFades	Fade constant of each input
+		 * @return	Index of the operation
+		 */
+		public int addEffect(AudioAlgorithm algorithm, int[] inputOps, int[] inputFades) {
+			return this.add(OP_EFFECT, algorithm, null, inputOps, inputFades);
+		}
+
+		/**
+		 * Add a mix of the given operations
+		 * @param inputOps
+		 * @return	Index of the operation
+		 */
+		public int addMix(int[] inputOps) {
+			return this.add(OP_MIX, null, null, inputOps, null);
+		}
+
+		/**
+		 * Add a mix of the given operations, fading some of them
+		 * @param inputOps
+		 * @param inputFades	Fade constant of each input
+		 * @return	Index of the operation
+		 */
+		public int addMix(int[] inputOps, int[] inputFades) {
+			return this.add(OP_MIX, null, null, inputOps, inputFades);
+		}
+
+		/**
+		 * Add a signal source
+		 * @param source
+		 * @return	Index of the operation
+		 */
+		public int addSource(SignalSource source) {
+			return this.add(OP_SOURCE, null, source, new int[0], null);
+		}
+
+		/**
+		 * Add an operation
+		 */
+		private int add(int kind, AudioAlgorithm algorithm, SignalSource source, int[] inputOps, int[] inputFades) {
+			// Only keep the fades of operations that actually fade anything
+			boolean fading = false;
+			if (inputFades != null)
+				for (int f : inputFades)
+					fading |= (f != FADE_NONE);
+
+			kinds.add(kind);
+			algorithms.add(algorithm);
+			sources.add(source);
+			inputs.add(inputOps);
+			fades.add(fading ? inputFades : null);
+			return kinds.size() - 1;
+		}
+
+		/**
+		 * Assign the buffer slots and create the plan
+		 * @return
+		 */
+		public RenderPlan build() {
+			int count = kinds.size();
+			int[] kindArray = new int[count];
+			int[][] inputSlots = new int[count][];
+			int[] outputSlots = new int[count];
+			boolean[] copiesFirst = new boolean[count];
+
+			// Fades of each operation (none at all for plans without fading inputs)
+			int[][] fadeArray = null;
+			for (int k = 0; k < count; k++) {
+				if (fades.get(k) == null) continue;
+				if (fadeArray == null)
+					fadeArray = new int[count][];
+				fadeArray[k] = fades.get(k);
+			}
+
+			// Number of reads of each operation's output that are still to come
+			int[] pending = new int[count];
+			for (int[] ops : inputs)
+				for (int op : ops)
+					pending[op]++;
+
+			// Find the independent branches feeding the last operation
+			int[] branchStarts = new int[0];
+			int[] branchEnds = new int[0];
+			if (count > 0 && this.hasIndependentBranches()) {
+				int[] roots = inputs.get(count - 1);
+				branchStarts = new int[roots.length];
+				branchEnds = roots.clone();
+				for (int b = 0; b < roots.length; b++)
+					branchStarts[b] = (b == 0) ? 0 : roots[b - 1] + 1;
+			}
+
+			// Slots that are free to be reused
+			List<Integer> free = new ArrayList<Integer>();
+			int slotCount = 0;
+			int branch = 0;
+
+			for (int k = 0; k < count; k++) {
+				kindArray[k] = kinds.get(k);
+
+				// Slots are never shared between branches
+				if (branch < branchStarts.length && k == branchStarts[branch]) {
+					free.clear();
+					branch++;
+				}
+
+				int[] ops = inputs.get(k);
+				inputSlots[k] = new int[ops.length];
+				for (int j = 0; j < ops.length; j++)
+					inputSlots[k][j] = outputSlots[ops[j]];
+
+				if (ops.length > 0 && pending[ops[0]] == 1) {
+					// Mix in place into the first input's slot
+					outputSlots[k] = inputSlots[k][0];
+					pending[ops[0]]--;
+				} else {
+					// Without inputs, or if the first input is read by others as well, use a slot of its own
+					outputSlots[k] = free.isEmpty() ? slotCount++ : free.remove(free.size() - 1);
+					copiesFirst[k] = (ops.length > 0);
+				}
+
+				// Release the input slots that have been read for the last time
+				for (int j = (copiesFirst[k] || ops.length == 0) ? 0 : 1; j < ops.length; j++)
+					if (--pending[ops[j]] == 0)
+						free.add(outputSlots[ops[j]]);
+			}
+
+			return new RenderPlan(kindArray,
+					algorithms.toArray(new AudioAlgorithm[count]),
+					sources.toArray(new SignalSource[count]),
+					inputSlots, outputSlots, copiesFirst, fadeArray, slotCount, branchStarts, branchEnds);
+		}
+
+		/**
+		 * Checks if the inputs of the last operation are at least two contiguous,
+		 * self-contained ranges of operations that directly precede it
+		 * @return
+		 */
+		private boolean hasIndependentBranches() {
+			int last = kinds.size() - 1;
+			int[] roots = inputs.get(last);
+			if (roots.length < 2 || roots[roots.length - 1] != last - 1)
+				return false;
+
+			int start = 0;
+			for (int b = 0; b < roots.length; b++) {
+				if (roots[b] < start)
+					return false;
+				// Every operation of the branch may only depend on operations of the same branch
+				for (int k = start; k <= roots[b]; k++)
+					for (int op : inputs.get(k))
+						if (op < start)
+							return false;
+				start = roots[b] + 1;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed pool of worker threads that render the independent branches of a RenderPlan
+ * in parallel. The rendering thread publishes each block as a new generation, helps
+ * rendering branches itself and waits for the remaining ones before it mixes them.
+ * Branches are claimed from an atomic counter, so no task objects are allocated per block.
+ * Waking the workers costs more than rendering a few operations, so a plan is only split
+ * if at least two of its branches have MIN_BRANCH_SIZE operations or more
+ * @author Marcel
+ *
+ */
+public class RenderWorkerPool {
+
+	/** Number of times a waiting thread checks for progress before it yields or parks */
+	private static final int SPIN_TRIES = 1000;
+	/** Number of operations from which on a branch is worth rendering on another thread */
+	private static final int MIN_BRANCH_SIZE = 4;
+
+	/** Worker threads */
+	private final Worker[] workers;
+
+	/** Plan of the current generation */
+	private volatile RenderPlan job;
+
+	/**
+	 * State of the current generation: generation number in the upper 32 bits,
+	 * index of the next unclaimed branch in the lower 32 bits
+	 */
+	private final AtomicLong state = new AtomicLong(0);
+
+	/** Number of branches of the current generation that have been rendered */
+	private final AtomicInteger finished = new AtomicInteger(0);
+
+	/** Flag if the workers should keep on running */
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor
+	 * @param threads	Number of worker threads (the rendering thread helps out as well)
+	 */
+	public RenderWorkerPool(int threads) {
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Render the given plan, splitting its branches among the worker threads.
+	 * Plans without (enough) large independent branches are rendered on the calling thread
+	 * @param plan
+	 * @return	Buffer of the plan's output
+	 */
+	public float[] render(RenderPlan plan) {
+		int branches = plan.branchCount();
+		if (workers.length == 0 || !this.worthSplitting(plan))
+			return plan.render();
+
+		// Publish the new generation
+		job = plan;
+		finished.set(0);
+		long generation = (state.get() >>> 32) + 1;
+		state.set(generation << 32);
+		for (Worker w : workers)
+			LockSupport.unpark(w);
+
+		// Help out, then wait for the branches claimed by the workers
+		this.renderBranches(generation);
+		int spins = 0;
+		while (finished.get() < branches) {
+			if (++spins > SPIN_TRIES)
+				Thread.yield();
+		}
+
+		return plan.renderOutput();
+	}
+
+	/**
+	 * Checks if the given plan has at least two branches of MIN_BRANCH_SIZE operations or more
+	 * @param plan
+	 * @return
+	 */
+	private boolean worthSplitting(RenderPlan plan) {
+		int large = 0;
+		for (int b = 0; b < plan.branchCount() && large < 2; b++)
+			if (plan.branchSize(b) >= MIN_BRANCH_SIZE)
+				large++;
+		return large >= 2;
+	}
+
+	/**
+	 * Claim and render branches of the given generation until there are none left
+	 * @param generation
+	 * @return	true if the generation was still current
+	 */
+	private boolean renderBranches(long generation) {
+		while (true) {
+			long s = state.get();
+			if ((s >>> 32) != generation)
+				return false;
+			RenderPlan plan = job;
+			int branch = (int) s;
+			if (branch >= plan.branchCount())
+				return true;
+			if (state.compareAndSet(s, s + 1)) {
+				plan.renderBranch(branch);
+				finished.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Stop all worker threads
+	 */
+	public void shutdown() {
+		running = false;
+		for (Worker w : workers) {
+			LockSupport.unpark(w);
+			try {
+				w.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Worker thread of the pool
+	 * @author Marcel
+	 *
+	 */
+	private class Worker extends Thread {
+
+		/** Last generation this worker has taken part in */
+		private long seen;
+
+		/**
+		 * Constructor
+		 * @param index
+		 */
+		private Worker(int index) {
+			super("thesisynth-render-" + index);
+			setPriority(Thread.MAX_PRIORITY);
+			setDaemon(true);
+		}
+
+		/**
+		 * Run implementation
+		 */
+		public void run() {
+			int spins = 0;
+			while (running) {
+				long generation = state.get() >>> 32;
+				if (generation == seen) {
+					// Spin for a short while, then sleep until the next block is published
+					if (++spins > SPIN_TRIES)
+						LockSupport.park(this);
+					continue;
+				}
+				spins = 0;
+				seen = generation;
+				renderBranches(generation);
+			}
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+/**
+ * Interface for objects that produce audio on their own, without
+ * an AudioAlgorithm (for example, the device's microphone)
+ * @author Marcel
+ *
+ */
+public interface SignalSource {
+
+	/**
+	 * Fill a buffer with the next block of audio and return it
+	 * @return
+	 */
+	public float[] fillBuffer();
+
+	/**
+	 * Adapt to a new EngineConfig (sample rate or block size).
+	 * This is called while the engine is stopped
+	 */
+	public void reconfigure();
+
+	/**
+	 * Release the resources of this source (e.g. a capture thread).
+	 * This is called once its AudioNode has been removed from the graph and isn't rendered anymore,
+	 * so it must not block
+	 */
+	public void release();
+}
@@ -0,0 +1,269 @@
+package de.hsb.ms.syn.common.audio.engine;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Uniform grid over the positions of a set of AudioNodes, answering
+ * "nearest AudioNode that hasn't been arranged yet" queries for AudioGraph.arrange().
+ * The grid has about one AudioNode per cell. A Search walks the cells around its origin
+ * ring by ring and hands out the AudioNodes in increasing distance, so that only the
+ * neighborhood that is actually needed gets looked at.
+ * The index is a snapshot: it has to be rebuilt after AudioNodes have been added, removed or moved
+ * @author Marcel
+ *
+ */
+public class SpatialIndex {
+
+	/** AudioNodes sorted by cell */
+	private final AudioNode[] cellNodes;
+	/** Index of the first AudioNode of each cell inside cellNodes (plus one end index) */
+	private final int[] cellStarts;
+
+	/** Origin of the grid */
+	private final float minX;
+	private final float minY;
+	/** Edge length of a cell */
+	private final float cellSize;
+	/** Number of columns and rows of the grid */
+	private final int cols;
+	private final int rows;
+
+	/**
+	 * Constructor
+	 * @param nodes
+	 */
+	public SpatialIndex(Collection<AudioNode> nodes) {
+		int count = nodes.size();
+
+		// Bounding box of the AudioNodes
+		float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE;
+		float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+		for (AudioNode n : nodes) {
+			x0 = Math.min(x0, n.getX());
+			y0 = Math.min(y0, n.getY());
+			x1 = Math.max(x1, n.getX());
+			y1 = Math.max(y1, n.getY());
+		}
+		if (count == 0)
+			x0 = y0 = x1 = y1 = 0;
+
+		// Square cells, about one AudioNode per cell
+		float width = Math.max(x1 - x0, 1f);
+		float height = Math.max(y1 - y0, 1f);
+		this.cellSize = Math.max((float) Math.sqrt(width * height / Math.max(count, 1)), 1f);
+		this.minX = x0;
+		this.minY = y0;
+		this.cols = (int) (width / cellSize) + 1;
+		this.rows = (int) (height / cellSize) + 1;
+
+		// Sort the AudioNodes into their cells (counting sort)
+		int[] cells = new int[count];
+		this.cellStarts = new int[cols * rows + 1];
+		int i = 0;
+		for (AudioNode n : nodes) {
+			cells[i] = this.column(n.getX()) + this.row(n.getY()) * cols;
+			cellStarts[cells[i] + 1]++;
+			i++;
+		}
+		for (int c = 0; c < cols * rows; c++)
+			cellStarts[c + 1] += cellStarts[c];
+
+		this.cellNodes = new AudioNode[count];
+		int[] fill = new int[cols * rows];
+		i = 0;
+		for (AudioNode n : nodes) {
+			int c = cells[i++];
+			cellNodes[cellStarts[c] + fill[c]++] = n;
+		}
+	}
+
+	/**
+	 * Start a search for the AudioNodes that haven't been arranged, nearest to the given AudioNode first
+	 * @param origin
+	 * @return
+	 */
+	public Search search(AudioNode origin) {
+		return new Search(origin);
+	}
+
+	/**
+	 * Add every AudioNode whose distance to the given origin lies within [from:to] to the given list
+	 * @param origin
+	 * @param from
+	 * @param to
+	 * @param out
+	 */
+	public void collect(AudioNode origin, float from, float to, List<AudioNode> out) {
+		int c0 = this.column(origin.getX() - to), c1 = this.column(origin.getX() + to);
+		int r0 = this.row(origin.getY() - to), r1 = this.row(origin.getY() + to);
+		for (int row = r0; row <= r1; row++) {
+			for (int col = c0; col <= c1; col++) {
+				int cell = col + row * cols;
+				for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+					AudioNode n = cellNodes[k];
+					float d = origin.distanceTo(n);
+					if (n != origin && d >= from && d <= to)
+						out.add(n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the column of the given x coordinate, clamped to the grid
+	 * @param x
+	 * @return
+	 */
+	private int column(float x) {
+		return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellSize)));
+	}
+
+	/**
+	 * Returns the row of the given y coordinate, clamped to the grid
+	 * @param y
+	 * @return
+	 */
+	private int row(float y) {
+		return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+	}
+
+	/**
+	 * Incremental nearest-neighbor search around one AudioNode
+	 * @author Marcel
+	 *
+	 */
+	public class Search {
+
+		/** AudioNode the search started from */
+		private final AudioNode origin;
+
+		/** Cell of the origin (may lie outside of the grid) */
+		private final int originCol;
+		private final int originRow;
+
+		/** Candidates found in the rings that have been scanned so far */
+		private final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+
+		/** Next ring of cells to scan (Chebyshev distance to the origin's cell) */
+		private int ring;
+
+		/** Distance of the AudioNode that was returned last */
+		private float distance;
+
+		/**
+		 * Constructor
+		 * @param origin
+		 */
+		private Search(AudioNode origin) {
+			this.origin = origin;
+			this.originCol = (int) Math.floor((origin.getX() - minX) / cellSize);
+			this.originRow = (int) Math.floor((origin.getY() - minY) / cellSize);
+
+			// An origin outside of the grid starts with the first ring that reaches the grid
+			this.ring = Math.max(Math.max(-originCol, originCol - (cols - 1)), Math.max(-originRow, originRow - (rows - 1)));
+			this.ring = Math.max(ring, 0);
+		}
+
+		/**
+		 * Returns the next nearest AudioNode that hasn't been arranged yet, or null if there is none.
+		 * AudioNodes that were arranged since the search started are skipped
+		 * @return
+		 */
+		public AudioNode next() {
+			while (true) {
+				// Every AudioNode outside of the scanned rings is at least this far away
+				float covered = (ring - 1) * cellSize;
+				Candidate c = queue.peek();
+				if (c != null && (c.distance < covered || !this.hasMoreRings())) {
+					queue.poll();
+					if (c.node.isArranged())
+						continue;
+					distance = c.distance;
+					return c.node;
+				}
+				if (!this.hasMoreRings())
+					return null;
+				this.scanRing();
+			}
+		}
+
+		/**
+		 * Returns the distance between the origin and the AudioNode returned by next()
+		 * @return
+		 */
+		public float distance() {
+			return distance;
+		}
+
+		/**
+		 * Checks if there are cells of the grid that haven't been scanned yet
+		 * @return
+		 */
+		private boolean hasMoreRings() {
+			int reach = Math.max(Math.max(originCol, cols - 1 - originCol), Math.max(originRow, rows - 1 - originRow));
+			return ring <= reach;
+		}
+
+		/**
+		 * Add the unarranged AudioNodes of the next ring of cells to the queue
+		 */
+		private void scanRing() {
+			int r = ring++;
+			// Only the part of the ring that overlaps the grid is walked
+			int row0 = Math.max(originRow - r, 0), row1 = Math.min(originRow + r, rows - 1);
+			int col0 = Math.max(originCol - r, 0), col1 = Math.min(originCol + r, cols - 1);
+			for (int row = row0; row <= row1; row++) {
+				boolean edge = (row == originRow - r || row == originRow + r);
+				if (edge) {
+					for (int col = col0; col <= col1; col++)
+						this.scanCell(col, row);
+				} else {
+					// Inside the ring, only its left and right cells are new
+					if (originCol - r >= 0)
+						this.scanCell(originCol - r, row);
+					if (originCol + r < cols)
+						this.scanCell(originCol + r, row);
+				}
+			}
+		}
+
+		/**
+		 * Add the unarranged AudioNodes of the given cell to the queue
+		 * @param col
+		 * @param row
+		 */
+		private void scanCell(int col, int row) {
+			int cell = col + row * cols;
+			for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+				AudioNode n = cellNodes[k];
+				if (n != origin && !n.isArranged())
+					queue.add(new Candidate(n, origin.distanceTo(n)));
+			}
+		}
+	}
+
+	/**
+	 * AudioNode found by a Search, ordered by distance (and by ID for equal distances)
+	 * @author Marcel
+	 *
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+
+		private final AudioNode node;
+		private final float distance;
+
+		public Candidate(AudioNode node, float distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			if (distance != other.distance)
+				return (distance < other.distance) ? -1 : 1;
+			return node.getID() - other.node.getID();
+		}
+	}
+}
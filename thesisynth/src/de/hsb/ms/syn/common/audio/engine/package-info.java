@@ -0,0 +1,5 @@
+/**
+ * Infrastructure of the audio engine that drives the AudioAlgorithm implementations,
+ * such as the structures used to hand data over to the audio thread.
+ */
+package de.hsb.ms.syn.common.audio.engine;
@@ -6,7 +6,9 @@ import de.hsb.ms.syn.common.audio.GenAudioAlgorithm;
 import de.hsb.ms.syn.common.audio.Properties;
 import de.hsb.ms.syn.common.audio.Property;
 import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
 import de.hsb.ms.syn.common.audio.gen.Sawtooth;
+import de.hsb.ms.syn.common.util.DspKernels;
 
 /**
  * Low frequency oscillator for various waveforms
@@ -18,6 +20,9 @@ public class LFO extends FxAudioAlgorithm {
 	/** Algorithm providing the LFO's modulation wave */
 	private GenAudioAlgorithm processor;
 	
+	/** Preallocated buffer holding one block of the modulation wave */
+	private float[] modulation;
+	
 	/**
 	 * Constructor
 	 * @param freq
@@ -25,6 +30,7 @@ public class LFO extends FxAudioAlgorithm {
 	 */
 	public LFO(float freq, Class<? extends GenAudioAlgorithm> delClass) {
 		super(freq, "node_lfo" + (delClass.equals(Sawtooth.class) ? "saw" : "sine"));
+		this.modulation = new float[EngineConfig.get().getBlockSize()];
 		this.setVolume(1.0f);
 		try {
 			// Create the GenAlgorithm for the modulation wave
@@ -38,18 +44,50 @@ public class LFO extends FxAudioAlgorithm {
 		// Re-set frequency property (LFOs use frequencies < 20 Hz, hence the name
 		this.properties.put(Properties.PROP_FREQUENCY,
 				new Property(Properties.PROP_FREQUENCY, "Frequency", 0.1f, 10.0f, 0.1f, freq));
+		if (processor != null)
+			processor.getProperties().put(Properties.PROP_FREQUENCY, new Property(this.property(Properties.PROP_FREQUENCY), freq));
 		
 		this.recalc();
 	}
 
+	@Override
+	/**
+	 * Fill the buffer the "FXNode" way
+	 * (multiply the buffer with one block of the modulation wave)
+	 * @param buffer
+	 * @return
+	 */
+	public float[] fillFXBuffer(float[] buffer) {
+		processor.fillGenBuffer(modulation);
+		DspKernels.multiply(buffer, modulation, buffer.length);
+		return buffer;
+	}
+
+	@Override
+	/**
+	 * While the LFO sleeps (its input is silent), its modulation wave keeps running,
+	 * so that it continues in phase once the input comes back
+	 */
+	public void skipBlock(int samples) {
+		if (processor != null)
+			processor.skip(samples);
+	}
+
+	@Override
+	public void reconfigure() {
+		this.modulation = new float[EngineConfig.get().getBlockSize()];
+		if (processor != null)
+			processor.reconfigure();
+		this.recalc();
+	}
+
 	@Override
 	public void recalc() {
 		// Let the processor do this
 		if (processor != null) {
-			Property volume = this.properties.get(Properties.PROP_FREQUENCY);
-			processor.getProperties().put(Properties.PROP_FREQUENCY, volume);
+			Properties target = processor.getProperties();
+			target.setVal(target.slot(Properties.PROP_FREQUENCY), this.getFreq());
 			processor.recalc();
-			this.data = processor.getData();
 		}
 	}
 }
@@ -3,25 +3,59 @@ package de.hsb.ms.syn.common.audio.fx;
 import de.hsb.ms.syn.common.audio.FxAudioAlgorithm;
 import de.hsb.ms.syn.common.audio.Properties;
 import de.hsb.ms.syn.common.audio.Property;
+import de.hsb.ms.syn.common.audio.SmoothedValue;
 import de.hsb.ms.syn.common.util.AudioUtils;
+import de.hsb.ms.syn.common.util.Constants;
 
 /**
- * Simple tap delay
+ * Simple tap delay.
+ * The delay line is allocated once for the longest possible delay time and keeps
+ * its contents when the parameters change. The delay time is fractional: the tap is read
+ * with linear interpolation. A new delay time doesn't move the tap (which would sweep the pitch
+ * of everything in the line), a second tap is faded in at the new time while the old one is faded out.
+ * Changes during a fade are taken over by the next one
  * @author Marcel
  *
  */
 public class TapDelay extends FxAudioAlgorithm {
-	
+
 	/** Property key for Dry/Wet ratio of the outgoing signal */
 	public static final int PROP_WET = 0x60;
 	/** Property key for the feedback amount of the delay algorithm */
 	public static final int PROP_FEEDBACK = 0x61;
 	/** Property key for the delay time */
 	public static final int PROP_TIME = 0x62;
-	
-	/** Internal delay cursor for the delay buffer */
-	private int delayCursor;
-	
+
+	/** Longest delay time in seconds */
+	private static final float MAX_TIME = 5.0f;
+	/** Time in ms to fade from one tap to another when the delay time changes */
+	private static final int TAP_FADE_TIME = 50;
+
+	/** Write position inside the delay line */
+	private int writeCursor;
+	/** Mask to wrap positions inside the delay line (its length is a power of two) */
+	private int mask;
+	/** Number of samples written to the delay line since it last held an audible sample */
+	private int quietSamples;
+
+	/** Property slots of the delay parameters */
+	private int timeSlot;
+	private int feedbackSlot;
+	private int wetSlot;
+
+	/** Delay time in samples of the tap being read, of the tap being faded in and of the parameter */
+	private float tap;
+	private float nextTap;
+	private float targetTap;
+	/** Length of a fade between two taps in samples */
+	private int fadeLength;
+	/** Number of samples since the current fade started (fadeLength if there is none) */
+	private int fadePosition;
+
+	/** Smoothed parameters, read once per block */
+	private SmoothedValue feedback;
+	private SmoothedValue wet;
+
 	/**
 	 * Constructor
 	 * @param responseTime	Time between delays in seconds
@@ -30,55 +64,136 @@ public class TapDelay extends FxAudioAlgorithm {
 	 */
 	public TapDelay(float responseTime, float feedback, float wet) {
 		super(1f, "node_delay");
-		
+
 		// Remove frequency prop (not needed)
 		this.properties.remove(Properties.PROP_FREQUENCY);
-		
+
 		// Set specific props
 		this.properties.put(PROP_FEEDBACK, new Property(PROP_FEEDBACK, "Feedback", 0.0f, 1.0f, 0.01f, feedback));
 		this.properties.put(PROP_WET, new Property(PROP_WET, "Dry/Wet ratio", 0.0f, 1.0f, 0.01f, wet));
-		this.properties.put(PROP_TIME, new Property(PROP_TIME, "Delay time", 0.1f, 5.0f, 0.1f, responseTime));
-		
-		this.delayCursor = 0;
+		this.properties.put(PROP_TIME, new Property(PROP_TIME, "Delay time", 0.1f, MAX_TIME, 0.1f, responseTime));
+		this.timeSlot = this.slot(PROP_TIME);
+		this.feedbackSlot = this.slot(PROP_FEEDBACK);
+		this.wetSlot = this.slot(PROP_WET);
+
 		this.setVolume(1.0f);
-		
-		this.recalc();
+		this.reconfigure();
 	}
-	
+
 	@Override
 	public float[] fillFXBuffer(float[] buffer) {
 		// Overriding this method because all delay processing needs to go here
-		for (int i = 0; i < buffer.length; i++) {
-			
+		float[] line = this.data;
+		int m = this.mask;
+		int w = this.writeCursor;
+		int n = buffer.length;
+
+		// Start fading to a new delay time once the last fade is complete
+		if (fadePosition >= fadeLength && targetTap != tap) {
+			nextTap = targetTap;
+			fadePosition = 0;
+		}
+		float d = this.tap;
+		float dNext = this.nextTap;
+		int fade = this.fadePosition;
+		int fadeEnd = this.fadeLength;
+
+		// Read the parameters once per block, ramping linearly across it
+		float fb = feedback.get();
+		float fbStep = (feedback.advance(n) - fb) / n;
+		float wt = wet.get();
+		float wtStep = (wet.advance(n) - wt) / n;
+		float peak = 0f;
+
+		for (int i = 0; i < n; i++) {
 			// Get the buffer sample
 			float x = buffer[i];
-			
-			// Get delay data sample at the current position
-			float y = this.data[this.delayCursor];
-			
-			// Save the new delay data
-			float fb = property(TapDelay.PROP_FEEDBACK).val();
-			this.data[this.delayCursor++] = x + (y * fb);
-			
-			// Wrap the delay cursor
-			if (this.delayCursor >= this.data.length) this.delayCursor = 0;
-			
+
+			// Get the delayed sample at the (fractional) tap position, fading to the next tap if there is one
+			float y = read(line, m, w - d);
+			if (fade < fadeEnd) {
+				y += ((float) fade / fadeEnd) * (read(line, m, w - dNext) - y);
+				if (++fade == fadeEnd)
+					d = dNext;
+			}
+
+			// Save the new delay data (flushing denormals, which the feedback would otherwise produce forever)
+			float v = x + (y * fb);
+			if (v < Constants.DENORMAL_LEVEL && v > -Constants.DENORMAL_LEVEL)
+				v = 0f;
+			line[w] = v;
+			w = (w + 1) & m;
+			peak = Math.max(peak, Math.abs(v));
+
 			// Re-set the buffer sample
-			if (y > 1) y = 1; else if (y < -1) y = -1;
-			float wet = property(TapDelay.PROP_WET).val();
-			buffer[i] = (x * (1.0f - wet)) + (y * wet);
+			y = Math.max(Math.min(y, 1f), -1f);
+			buffer[i] = (x * (1.0f - wt)) + (y * wt);
+
+			fb += fbStep;
+			wt += wtStep;
 		}
-		
+
+		this.writeCursor = w;
+		this.tap = d;
+		this.fadePosition = fade;
+		this.quietSamples = (peak < Constants.SILENCE_LEVEL) ? Math.min(quietSamples + n, line.length) : 0;
 		return buffer;
 	}
 
+	/**
+	 * Read the delay line at a fractional position with linear interpolation
+	 * @param line
+	 * @param mask
+	 * @param pos
+	 * @return
+	 */
+	private static float read(float[] line, int mask, float pos) {
+		int p = (int) Math.floor(pos);
+		float frac = pos - p;
+		float a = line[p & mask];
+		return a + frac * (line[(p + 1) & mask] - a);
+	}
+
+	@Override
+	/**
+	 * The delay sleeps while its input is silent and its tail has decayed,
+	 * i.e. after a whole delay line of inaudible samples
+	 */
+	public boolean isAsleep(boolean silentInput) {
+		return silentInput && quietSamples >= data.length;
+	}
+
 	@Override
 	public void recalc() {
-		float time = property(TapDelay.PROP_TIME).val();
-		int samples = AudioUtils.timeToSamples((int) (time * 1000));
-		this.data = new float[samples];
-		// Make sure the delayCursor does wrap around in case the Buffer Size was made smaller than its current value
-		this.delayCursor = this.delayCursor % this.data.length;
+		// Only move the parameters, the delay line keeps its contents
+		if (feedback == null) return;
+		targetTap = this.delaySamples();
+		feedback.setTarget(this.value(feedbackSlot));
+		wet.setTarget(this.value(wetSlot));
 	}
 
+	@Override
+	public void reconfigure() {
+		// Allocate the delay line for the longest delay time at the current sample rate
+		// (plus one sample for the interpolation), rounded up to a power of two
+		int size = Integer.highestOneBit(AudioUtils.timeToSamples((int) (MAX_TIME * 1000)) + 1) << 1;
+		this.data = new float[size];
+		this.mask = size - 1;
+		this.writeCursor = 0;
+		this.quietSamples = size;
+
+		tap = nextTap = targetTap = this.delaySamples();
+		fadeLength = Math.max(AudioUtils.timeToSamples(TAP_FADE_TIME), 1);
+		fadePosition = fadeLength;
+		feedback = this.smoothed(PROP_FEEDBACK, SmoothedValue.LINEAR);
+		wet = this.smoothed(PROP_WET, SmoothedValue.LINEAR);
+	}
+
+	/**
+	 * Returns the delay time property converted to samples
+	 * @return
+	 */
+	private float delaySamples() {
+		return this.value(timeSlot) * AudioUtils.timeToSamples(1000);
+	}
 }
@@ -0,0 +1,155 @@
+package de.hsb.ms.syn.common.audio.gen;
+
+import java.util.Arrays;
+
+import de.hsb.ms.syn.common.audio.GenAudioAlgorithm;
+import de.hsb.ms.syn.common.audio.Properties;
+import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.SmoothedValue;
+import de.hsb.ms.syn.common.audio.VoicePool;
+import de.hsb.ms.syn.common.audio.WavetableBank;
+import de.hsb.ms.syn.common.util.DspKernels;
+
+/**
+ * Polyphonic generator for any waveform of the WavetableBank.
+ * Notes are played by a fixed pool of voices, so starting and stopping them
+ * doesn't allocate anything or change the Node graph. Notes are started and stopped
+ * with the EVENT_NOTEON and EVENT_NOTEOFF events, whose value is a knob value of the scale.
+ * Volume changes ramp like those of the other generators
+ * @author Marcel
+ *
+ */
+public class PolyphonicGenerator extends GenAudioAlgorithm {
+
+	/** Event key for starting a note */
+	public static final int EVENT_NOTEON = 0x70;
+	/** Event key for stopping a note */
+	public static final int EVENT_NOTEOFF = 0x71;
+
+	/** Default number of voices */
+	public static final int DEFAULT_VOICES = 8;
+
+	/** Sprite names for each waveform */
+	private static final String[] SPRITES = new String[] {
+		"node_sinewave", "node_square", "node_sawtooth", "node_triangle"
+	};
+
+	/** Waveform of every voice */
+	private int waveform;
+
+	/** Voices of this generator */
+	private VoicePool voices;
+
+	/** Smoothed amplitude of every voice (ramps per sample) */
+	private SmoothedValue amplitude;
+
+	/**
+	 * Constructor
+	 * @param scale		Scale of the played notes
+	 * @param waveform	WavetableBank waveform constant
+	 * @param voices	Number of voices
+	 * @param stealMode	VoicePool stealing mode constant
+	 */
+	public PolyphonicGenerator(Scale scale, int waveform, int voices, int stealMode) {
+		super(scale, SPRITES[waveform]);
+		this.waveform = waveform;
+		this.voices = new VoicePool(voices, stealMode);
+		this.recalc();
+	}
+
+	/**
+	 * Constructor using the default number of voices, stealing the oldest one
+	 * @param scale
+	 * @param waveform
+	 */
+	public PolyphonicGenerator(Scale scale, int waveform) {
+		this(scale, waveform, DEFAULT_VOICES, VoicePool.STEAL_OLDEST);
+	}
+
+	@Override
+	protected int getWaveform() {
+		return waveform;
+	}
+
+	@Override
+	public void recalc() {
+		// Voices are tuned when their note starts, only a waveform change needs to reach them
+		if (voices != null)
+			voices.retune(waveform, scale);
+		if (amplitude == null)
+			amplitude = this.smoothed(Properties.PROP_VOLUME, SmoothedValue.LINEAR);
+		else
+			amplitude.setTarget(this.value(volumeSlot));
+	}
+
+	@Override
+	public void reconfigure() {
+		// The ramp is measured in samples, so it starts over with the new sample rate
+		amplitude = null;
+		super.reconfigure();
+	}
+
+	@Override
+	public boolean handleEvent(int key, float value) {
+		switch (key) {
+		case EVENT_NOTEON:
+			this.noteOn((int) value);
+			return true;
+		case EVENT_NOTEOFF:
+			this.noteOff((int) value);
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Start the note with the given knob value
+	 * @param note
+	 */
+	public void noteOn(int note) {
+		voices.noteOn(note, waveform, scale.getFrequencyForKnobValue(note));
+	}
+
+	/**
+	 * Stop the note with the given knob value
+	 * @param note
+	 */
+	public void noteOff(int note) {
+		voices.noteOff(note);
+	}
+
+	/**
+	 * Set the stealing mode of the voice pool
+	 * @param stealMode	VoicePool stealing mode constant
+	 */
+	public void setStealMode(int stealMode) {
+		voices.setStealMode(stealMode);
+	}
+
+	@Override
+	/**
+	 * The generator sleeps while no voice is sounding, or once its amplitude has settled at zero
+	 */
+	public boolean isAsleep(boolean silentInput) {
+		return voices.activeVoices() == 0 || (!amplitude.isSmoothing() && amplitude.getTarget() == 0f);
+	}
+
+	@Override
+	/**
+	 * While the generator sleeps at zero volume, its voices keep on running
+	 * (so that released notes still end and held ones keep their phase)
+	 */
+	public void skipBlock(int samples) {
+		voices.skip(samples);
+	}
+
+	@Override
+	public float[] fillGenBuffer(float[] buffer) {
+		Arrays.fill(buffer, 0f);
+		float from = amplitude.get();
+		voices.render(buffer, from, amplitude.advance(buffer.length));
+		DspKernels.clamp(buffer, buffer.length);
+		return buffer;
+	}
+}
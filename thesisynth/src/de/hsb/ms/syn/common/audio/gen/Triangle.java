@@ -1,10 +1,8 @@
 package de.hsb.ms.syn.common.audio.gen;
 
-import de.hsb.ms.syn.common.audio.FixedFrequencyScale;
 import de.hsb.ms.syn.common.audio.GenAudioAlgorithm;
-import de.hsb.ms.syn.common.audio.Properties;
 import de.hsb.ms.syn.common.audio.Scale;
-import de.hsb.ms.syn.common.util.AudioUtils;
+import de.hsb.ms.syn.common.audio.WavetableBank;
 
 /**
  * Triangle generator
@@ -23,16 +21,8 @@ public class Triangle extends GenAudioAlgorithm {
 	}
 
 	@Override
-	public void recalc() {
-		float freq;
-		if (scale instanceof FixedFrequencyScale)
-			freq = property(Properties.PROP_FREQUENCY).val();
-		else {
-			int knob = (int) property(Properties.PROP_TONE).val();
-			freq = scale.getFrequencyForKnobValue(knob);
-		}
-		float volume = property(Properties.PROP_VOLUME).val();
-		this.data = AudioUtils.triangle(freq, volume);
+	protected int getWaveform() {
+		return WavetableBank.WAVE_TRIANGLE;
 	}
 
 }
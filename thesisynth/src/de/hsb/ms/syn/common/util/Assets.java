@@ -0,0 +1,129 @@
+package de.hsb.ms.syn.common.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+
+/**
+ * Reference-counted cache of the graphical resources shared by the Nodes:
+ * one Texture per sprite name, one BitmapFont and one ShapeRenderer.
+ * Each get...() call has to be paired with a release...() call; a resource is loaded
+ * by its first user and disposed as soon as its last user has released it.
+ * Must only be used on the rendering thread (it holds GL resources)
+ * @author Marcel
+ *
+ */
+public abstract class Assets {
+
+	/** Node textures by sprite name */
+	private static final Map<String, Texture> textures = new HashMap<String, Texture>();
+	/** Number of users of each Node texture */
+	private static final Map<String, Integer> textureUsers = new HashMap<String, Integer>();
+
+	/** Font used for Node information */
+	private static BitmapFont font;
+	private static int fontUsers = 0;
+
+	/** Renderer used for Node connections and highlights */
+	private static ShapeRenderer shapeRenderer;
+	private static int shapeRendererUsers = 0;
+
+	/**
+	 * Returns the texture of the Node sprite with the given name, loading it if necessary
+	 * @param spriteName
+	 * @return
+	 */
+	public static Texture getNodeTexture(String spriteName) {
+		Texture texture = textures.get(spriteName);
+		if (texture == null) {
+			texture = new Texture(Gdx.files.internal(String.format(Constants.PATH_NODE, spriteName)));
+			textures.put(spriteName, texture);
+			textureUsers.put(spriteName, 0);
+		}
+		textureUsers.put(spriteName, textureUsers.get(spriteName) + 1);
+		return texture;
+	}
+
+	/**
+	 * Release the texture of the Node sprite with the given name, disposing it if it isn't used anymore
+	 * @param spriteName
+	 */
+	public static void releaseNodeTexture(String spriteName) {
+		Integer users = textureUsers.get(spriteName);
+		if (users == null) return;
+		if (users > 1) {
+			textureUsers.put(spriteName, users - 1);
+		} else {
+			textureUsers.remove(spriteName);
+			textures.remove(spriteName).dispose();
+		}
+	}
+
+	/**
+	 * Returns the font, loading it if necessary
+	 * @return
+	 */
+	public static BitmapFont getFont() {
+		if (font == null)
+			font = new BitmapFont(Gdx.files.internal(Constants.PATH_FONT), false);
+		fontUsers++;
+		return font;
+	}
+
+	/**
+	 * Release the font, disposing it if it isn't used anymore
+	 */
+	public static void releaseFont() {
+		if (fontUsers == 0) return;
+		if (--fontUsers == 0) {
+			font.dispose();
+			font = null;
+		}
+	}
+
+	/**
+	 * Returns the shape renderer, creating it if necessary
+	 * @return
+	 */
+	public static ShapeRenderer getShapeRenderer() {
+		if (shapeRenderer == null)
+			shapeRenderer = new ShapeRenderer();
+		shapeRendererUsers++;
+		return shapeRenderer;
+	}
+
+	/**
+	 * Release the shape renderer, disposing it if it isn't used anymore
+	 */
+	public static void releaseShapeRenderer() {
+		if (shapeRendererUsers == 0) return;
+		if (--shapeRendererUsers == 0) {
+			shapeRenderer.dispose();
+			shapeRenderer = null;
+		}
+	}
+
+	/**
+	 * Dispose every resource that is still in use (when the application shuts down)
+	 */
+	public static void dispose() {
+		for (Texture texture : textures.values())
+			texture.dispose();
+		textures.clear();
+		textureUsers.clear();
+		if (font != null) {
+			font.dispose();
+			font = null;
+		}
+		fontUsers = 0;
+		if (shapeRenderer != null) {
+			shapeRenderer.dispose();
+			shapeRenderer = null;
+		}
+		shapeRendererUsers = 0;
+	}
+}
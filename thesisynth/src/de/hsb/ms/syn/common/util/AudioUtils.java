@@ -1,5 +1,7 @@
 package de.hsb.ms.syn.common.util;
 
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+
 /**
  * Utility class for specific audio things. It contains the generation
  * algorithms for most Gen Nodes, for example
@@ -18,11 +20,12 @@ public abstract class AudioUtils {
 	 */
 	public static float[] sinewave(float freq, float velocity) {
 		// Caluclate number of samples for the given set of params
-		int samples = (int) Math.floor(Constants.SAMPLING_RATE * (1 / freq));
+		int rate = EngineConfig.get().getSampleRate();
+		int samples = (int) Math.floor(rate * (1 / freq));
 		float[] vals = new float[samples];
 		for (int i = 0; i < samples; i++) {
 			vals[i] = velocity
-					* (float) Math.sin(2 * Math.PI * i / (44100 / freq));
+					* (float) Math.sin(2 * Math.PI * i / (rate / freq));
 		}
 		return vals;
 	}
@@ -36,7 +39,7 @@ public abstract class AudioUtils {
 	 */
 	public static float[] square(float freq, float velocity) {
 		// Caluclate number of samples for the given set of params
-		int samples = (int) Math.floor(Constants.SAMPLING_RATE * (1 / freq));
+		int samples = (int) Math.floor(EngineConfig.get().getSampleRate() * (1 / freq));
 		float[] vals = new float[samples];
 		// Fill half of these samples with a 1
 		for (int i = 0; i < (vals.length - (samples % 2)) / 2; i++) {
@@ -58,7 +61,7 @@ public abstract class AudioUtils {
 	 */
 	public static float[] sawtooth(float freq, float velocity) {
 		// Caluclate number of samples for the given set of params
-		int samples = (int) Math.floor(Constants.SAMPLING_RATE * (1 / freq));
+		int samples = (int) Math.floor(EngineConfig.get().getSampleRate() * (1 / freq));
 		float[] vals = new float[samples];
 		// Use the linear function f(x) = 2/samples * x - 1 for emulating the
 		// sawtooth
@@ -78,7 +81,7 @@ public abstract class AudioUtils {
 	 */
 	public static float[] triangle(float freq, float velocity) {
 		// Caluclate number of samples for the given set of params
-		int samples = (int) Math.floor(Constants.SAMPLING_RATE * (1 / freq));
+		int samples = (int) Math.floor(EngineConfig.get().getSampleRate() * (1 / freq));
 		float[] vals = new float[samples];
 		// Fill half of these samples with f(x) = 2/(samples/2) * x - 1 (upwards slope of the triangle)
 		for (int i = 0; i < (vals.length - (samples % 2)) / 2; i++) {
@@ -94,14 +97,14 @@ public abstract class AudioUtils {
 
 	/**
 	 * Convert the given time in milliseconds to an amount of samples with the
-	 * same duration (for instance, at 44100 kHz, the number of samples for 500
-	 * ms would be 22050)
+	 * same duration at the current sample rate (for instance, at 44100 Hz,
+	 * the number of samples for 500 ms would be 22050)
 	 * 
 	 * @param time
 	 * @return
 	 */
 	public static int timeToSamples(int time) {
-		return Math.round((float) Constants.SAMPLING_RATE
+		return Math.round((float) EngineConfig.get().getSampleRate()
 				* ((float) time / 1000.0f));
 	}
 
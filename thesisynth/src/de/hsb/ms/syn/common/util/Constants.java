@@ -24,11 +24,15 @@ public abstract class Constants {
 	public static final String	SIMON_NAME			= "Thesisynth Server powered by SIMON";
 	
 	// Audio
-	public static final int 	BUFFER_SIZE			= 1000;
-	public static final int 	SAMPLING_RATE 		= 44100;
+	public static final int 	BUFFER_SIZE			= 1000;	// Default block size (see EngineConfig)
+	public static final int 	SAMPLING_RATE 		= 44100;	// Default sample rate (see EngineConfig)
 	public static final int		CENTERNODE_INPUTS 	= 20;
 	public static final int		TAPDELAY_INPUTS		= 5;
 	public static final int		LFO_INPUTS			= 5;
+	public static final int		SMOOTHING_TIME		= 20;	// Parameter ramp time in ms
+	public static final int		CROSSFADE_TIME		= 30;	// Default crossfade time in ms when connections change (see EngineConfig)
+	public static final float	SILENCE_LEVEL		= 1e-6f;	// Amplitude below which a signal counts as silent (-120 dB)
+	public static final float	DENORMAL_LEVEL		= 1e-15f;	// Amplitude below which feedback paths are flushed to zero
 	
 	// Files
 	private static final String PATH_ASSETS 		= "data";
@@ -8,6 +8,7 @@ import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.scenes.scene2d.utils.DragListener;
 
 import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
 import de.hsb.ms.syn.common.util.Utils;
 import de.hsb.ms.syn.desktop.SynthesizerAudioProcessor;
 
@@ -19,16 +20,13 @@ import de.hsb.ms.syn.desktop.SynthesizerAudioProcessor;
  */
 public abstract class DraggableNode extends Node {
 
-	/** The Node's "executor", basically the algorithm that fills this Node's buffer */
-	protected AudioAlgorithm algorithm;
-
 	/**
 	 * Constructor
-	 * @param inputs
+	 * @param model
 	 * @param pos
 	 */
-	protected DraggableNode(int inputs, Vector2 pos) {
-		super(inputs, pos);
+	protected DraggableNode(AudioNode model, Vector2 pos) {
+		super(model, pos);
 		setTouchable(Touchable.enabled);
 
 		// Add event listener for touch handling
@@ -45,7 +43,7 @@ public abstract class DraggableNode extends Node {
 			public void drag(InputEvent event, float dx, float dy, int pointer) {
 				super.drag(event, dx, dy, pointer);
 				n.setNodePosition(n.getX() + dx, n.getY() + dy);
-				SynthesizerAudioProcessor.getInstance().arrangeAll();
+				SynthesizerAudioProcessor.getInstance().moveNode(n);
 			}
 
 			@Override
@@ -77,9 +75,9 @@ public abstract class DraggableNode extends Node {
 	 */
 	public void setAlgorithm(AudioAlgorithm algorithm) {
 		if (this.getClass().equals(algorithm.getServedClass())) {
-			this.algorithm = algorithm;
+			this.model.setAlgorithm(algorithm);
 //			this.delegate.setNodeIndex(this.id);
-			this.init(this.algorithm.getSpriteName());
+			this.init(algorithm.getSpriteName());
 		} else
 			Utils.log(String.format(
 					"%s %s can't be assigned a Delegate of type %s",
@@ -92,6 +90,6 @@ public abstract class DraggableNode extends Node {
 	 * @return
 	 */
 	public AudioAlgorithm getAlgorithm() {
-		return algorithm;
+		return model.getAlgorithm();
 	}
 }
@@ -3,6 +3,7 @@ package de.hsb.ms.syn.common.vo;
 import com.badlogic.gdx.math.Vector2;
 
 import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
 
 /**
  * Gen Node
@@ -21,9 +22,9 @@ public class GenNode extends DraggableNode {
 	 * @param pos		Initial position on the synthesizer's surface
 	 */
 	public GenNode(int inputs, Vector2 pos) {
-		super(inputs, pos);
-		algorithm = AudioAlgorithm.GEN_DEFAULT;
-		this.init(this.algorithm.getSpriteName());
+		super(new AudioNode(AudioNode.KIND_GENERATOR, inputs), pos);
+		model.setAlgorithm(AudioAlgorithm.GEN_DEFAULT);
+		this.init(AudioAlgorithm.GEN_DEFAULT.getSpriteName());
 	}
 
 	@Override
@@ -31,16 +32,6 @@ public class GenNode extends DraggableNode {
 		super.setAlgorithm(d);
 	}
 	
-	@Override
-	/**
-	 * Fill the processor's buffer with the contents
-	 * of each buffer stream from every "Node path"
-	 * @param buffer
-	 */
-	public float[] fillBuffer() {
-		return this.algorithm.fillGenBuffer(buffer);
-	}
-	
 	@Override
 	public String toString() {
 		return "GEN NODE " + id + " (" + this.MAX_INPUTS + " INPUTS)";
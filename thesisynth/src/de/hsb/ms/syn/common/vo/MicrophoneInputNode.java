@@ -1,33 +1,37 @@
 package de.hsb.ms.syn.common.vo;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-
-import org.apache.commons.lang3.ArrayUtils;
-
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.AudioRecorder;
 import com.badlogic.gdx.math.Vector2;
 
-import de.hsb.ms.syn.common.util.Constants;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.audio.engine.FloatRingBuffer;
+import de.hsb.ms.syn.common.audio.engine.SignalSource;
 
 /**
  * Microphone Input Node
  * 
  * A Microphone Input Node obtains signals from the device's microphone
- * in order to generate its buffer. It usually doesn't have any inputs
+ * in order to generate its buffer. It usually doesn't have any inputs.
+ * The microphone is read by a capture thread, which writes into a ring buffer
+ * that the audio thread reads from without ever blocking
  * (Buggy implementation)
  * 
  * @author Marcel
  *
  */
-public class MicrophoneInputNode extends DraggableNode {
+public class MicrophoneInputNode extends DraggableNode implements SignalSource {
+
+	/** Number of blocks the ring buffer can hold */
+	private static final int RING_BLOCKS = 8;
 
-	/** Audio recorder */
-	private AudioRecorder recorder;
-	/** Gdx short temp buffer for incoming audio */
-	private short[] shorts;
+	/** Samples captured from the microphone */
+	private FloatRingBuffer ring;
+	/** Thread reading from the microphone */
+	private Capture capture;
+	/** Buffer handed to the audio engine */
+	private float[] buffer;
 
 	/**
 	 * Constructor
@@ -35,47 +39,135 @@ public class MicrophoneInputNode extends DraggableNode {
 	 * @param pos		Initial position on the synthesizer's surface
 	 */
 	public MicrophoneInputNode(int inputs, Vector2 pos) {
-		super(inputs, pos);
-		recorder = Gdx.audio.newAudioRecorder(Constants.SAMPLING_RATE, true);
-		shorts = new short[Constants.BUFFER_SIZE];
+		super(new AudioNode(AudioNode.KIND_SOURCE, inputs), pos);
+		this.reconfigure();
+		model.setSource(this);
 		
 		this.init("node_microphone");
 	}
 
 	@Override
 	/**
-	 * Fill the processor's buffer with the contents
-	 * of each buffer stream from every "Node path"
+	 * Fill the processor's buffer with the most recently
+	 * captured block of the microphone, scaled to its peak
 	 * @param buffer
 	 */
 	public float[] fillBuffer() {
 		
 		// TODO Find out the cause of this stupid white noise distortion
 		
-		// Read from the microphone
-		recorder.read(shorts, 0, shorts.length);
+		// Take what the capture thread has got so far, silence for the rest
+		int n = ring.read(buffer, 0, buffer.length);
+		for (int i = n; i < buffer.length; i++)
+			buffer[i] = 0f;
 		
 		// Find the highest value in the buffer
-		List<Short> l = Arrays.asList(ArrayUtils.toObject(shorts));
-		int max = Math.abs(Collections.max(l));
-		int min = Math.abs(Collections.min(l));
-		float scale = (max > min) ? max : min;
+		float peak = 0f;
+		for (int i = 0; i < n; i++) {
+			float a = Math.abs(buffer[i]);
+			if (a > peak) peak = a;
+		}
 		
 		// Scale the buffer by this factor (map to Gdx's [0:1] volume scale)
-		// We apply a primitive noise gate, too.
-		//int THRESHOLD = 40;
-		
-		for (int i = 0; i < buffer.length; i++) {
-			//buffer[i] = (Math.abs(shorts[i]) > THRESHOLD) ? (float) shorts[i] / scale : 0;
-			buffer[i] = (float) shorts[i] / scale;
+		if (peak > 0f) {
+			float scale = 1f / peak;
+			for (int i = 0; i < n; i++)
+				buffer[i] *= scale;
 		}
 		
 		return buffer;
 	}
 
+	@Override
+	public void reconfigure() {
+		EngineConfig config = EngineConfig.get();
+		if (capture != null)
+			capture.finish(true);
+		buffer = new float[config.getBlockSize()];
+		ring = new FloatRingBuffer(config.getBlockSize() * RING_BLOCKS);
+		capture = new Capture(ring, config);
+		capture.start();
+	}
+
+	@Override
+	/**
+	 * Stop capturing (the graphical resources are released by dispose())
+	 */
+	public void release() {
+		if (capture != null)
+			capture.finish(false);
+		capture = null;
+	}
+
 	@Override
 	public String toString() {
 		return "MICROPHONE INPUT NODE " + id + " (" + this.MAX_INPUTS
 				+ " INPUTS)";
 	}
+	
+	/**
+	 * Thread reading blocks from the microphone into a ring buffer.
+	 * It owns the AudioRecorder and releases it when it is finished
+	 * @author Marcel
+	 *
+	 */
+	private static class Capture extends Thread {
+		
+		/** Audio recorder */
+		private final AudioRecorder recorder;
+		/** Ring buffer to write into */
+		private final FloatRingBuffer ring;
+		/** Gdx short temp buffer for incoming audio */
+		private final short[] shorts;
+		/** Converted block of incoming audio */
+		private final float[] floats;
+		
+		/** Flag if the thread should keep on capturing */
+		private volatile boolean running = true;
+		
+		/**
+		 * Constructor
+		 * @param ring
+		 * @param config
+		 */
+		public Capture(FloatRingBuffer ring, EngineConfig config) {
+			super("Microphone capture");
+			this.setDaemon(true);
+			this.ring = ring;
+			this.recorder = Gdx.audio.newAudioRecorder(config.getSampleRate(), true);
+			this.shorts = new short[config.getBlockSize()];
+			this.floats = new float[config.getBlockSize()];
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					// Read from the microphone (blocks until a whole block has been recorded)
+					recorder.read(shorts, 0, shorts.length);
+					for (int i = 0; i < shorts.length; i++)
+						floats[i] = shorts[i] / 32768f;
+					
+					// If the audio thread falls behind, the newest block is dropped
+					ring.write(floats, 0, floats.length);
+				}
+			} finally {
+				recorder.dispose();
+			}
+		}
+		
+		/**
+		 * Let the thread stop after the block it is currently reading
+		 * @param wait	true to wait until the thread has released the microphone
+		 */
+		public void finish(boolean wait) {
+			running = false;
+			if (!wait) return;
+			try {
+				this.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
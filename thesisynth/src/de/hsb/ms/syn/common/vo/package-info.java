@@ -1,5 +1,5 @@
 /**
- * Node classes used by the Desktop host to represent sound entities, which are also
- * capable of arranging themselves along sound paths.
+ * Node classes used by the Desktop host to represent sound entities on the synthesizer's surface.
+ * Their audio model, which arranges itself along sound paths, is kept by the AudioGraph of the engine package.
  */
-package de.hsb.ms.syn.common.vo;
\ No newline at end of file
+package de.hsb.ms.syn.common.vo;
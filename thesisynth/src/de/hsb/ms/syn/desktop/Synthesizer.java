@@ -6,10 +6,13 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.graphics.FPSLogger;
 
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
 import de.hsb.ms.syn.common.interfaces.Connection;
 import de.hsb.ms.syn.common.interfaces.DesktopConnection;
 import de.hsb.ms.syn.common.interfaces.NetCapableApplicationListener;
 import de.hsb.ms.syn.common.net.NetMessage;
+import de.hsb.ms.syn.common.util.Assets;
+import de.hsb.ms.syn.common.util.Constants;
 
 /**
  * Desktop-sided synthesizer module
@@ -61,16 +64,29 @@ public class Synthesizer implements NetCapableApplicationListener {
 		audioProcessor.setStage(renderer.getNodesStage());
 		
 		// Add processors to input multiplexer:
+		// Keyboard shortcuts come first
+		input.addProcessor(new SynthesizerKeyProcessor(audioProcessor));
 		// The UI has its own processor
 		input.addProcessor(renderer.getUIStage());
 		// The renderer's Stage handles Node clicking and dragging
 		input.addProcessor(renderer.getNodesStage());
 		
+		// Engine configuration (may be overridden with -Dthesisynth.samplerate=..., -Dthesisynth.blocksize=... and -Dthesisynth.crossfade=...)
+		EngineConfig.set(new EngineConfig(
+				Integer.getInteger("thesisynth.samplerate", Constants.SAMPLING_RATE),
+				Integer.getInteger("thesisynth.blocksize", Constants.BUFFER_SIZE),
+				Integer.getInteger("thesisynth.crossfade", Constants.CROSSFADE_TIME)));
+		
 		// Initialize logic processor
 		audioProcessor.init();
 		
 		// Initialize net message processor
 		netProcessor = new SynthesizerNetworkProcessor(audioProcessor);
+		
+		// Start computing audio on its own thread. Large independent Node paths may be rendered
+		// in parallel by additional worker threads (-Dthesisynth.renderthreads=..., none by default)
+		audioProcessor.setRenderThreads(Integer.getInteger("thesisynth.renderthreads", 0));
+		audioProcessor.start();
 	}
 
 	@Override
@@ -85,8 +101,7 @@ public class Synthesizer implements NetCapableApplicationListener {
 		// Check for a new net message & process it
 		netProcessor.processNetMessage();
 		
-		// Process a step (audio etc)
-		audioProcessor.processAudio();
+		// (Audio is processed by the audio thread of the processor)
 		
 		// Render the state
 		renderer.render();
@@ -99,7 +114,14 @@ public class Synthesizer implements NetCapableApplicationListener {
 	public void resume() { }
 
 	@Override
-	public void dispose() { }
+	public void dispose() {
+		// Stop the audio thread
+		audioProcessor.dispose();
+		
+		// Release the UI, then the resources shared by the Nodes and the UI
+		renderer.dispose();
+		Assets.dispose();
+	}
 
 	@Override
 	public void onNetMessageReceived(NetMessage message) {
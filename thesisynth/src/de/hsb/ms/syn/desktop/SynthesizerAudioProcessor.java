@@ -1,5 +1,7 @@
 package de.hsb.ms.syn.desktop;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
@@ -9,13 +11,24 @@ import com.badlogic.gdx.audio.AudioDevice;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 
+import de.hsb.ms.syn.common.audio.AudioAlgorithm;
+import de.hsb.ms.syn.common.audio.Property;
 import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.WavetableBank;
+import de.hsb.ms.syn.common.audio.engine.AudioGraph;
+import de.hsb.ms.syn.common.audio.engine.AudioNode;
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.audio.engine.EngineStats;
+import de.hsb.ms.syn.common.audio.engine.GraphArranger;
+import de.hsb.ms.syn.common.audio.engine.GraphSnapshot;
+import de.hsb.ms.syn.common.audio.engine.OfflineRenderer;
+import de.hsb.ms.syn.common.audio.engine.ParameterChangeQueue;
+import de.hsb.ms.syn.common.audio.engine.RenderWorkerPool;
+import de.hsb.ms.syn.common.audio.gen.PolyphonicGenerator;
 import de.hsb.ms.syn.common.audio.gen.Sawtooth;
-import de.hsb.ms.syn.common.exceptions.NodeNotInitializedException;
 import de.hsb.ms.syn.common.net.NetMessage;
 import de.hsb.ms.syn.common.net.NetMessageFactory;
 import de.hsb.ms.syn.common.net.NetMessage.Command;
-import de.hsb.ms.syn.common.util.Constants;
 import de.hsb.ms.syn.common.util.Utils;
 import de.hsb.ms.syn.common.vo.CenterNode;
 import de.hsb.ms.syn.common.vo.DraggableNode;
@@ -29,7 +42,7 @@ import de.hsb.ms.syn.common.vo.Node;
  * @author Marcel
  *
  */
-public class SynthesizerAudioProcessor {
+public class SynthesizerAudioProcessor implements ParameterChangeQueue.Listener {
 
 	/** Singleton instance */
 	private static SynthesizerAudioProcessor instance;
@@ -39,6 +52,10 @@ public class SynthesizerAudioProcessor {
 	
 	/** Center Node from which recursive computations start */
 	private CenterNode centerNode;
+	/** Background thread that owns the headless audio model of the Node graph and publishes its snapshots */
+	private GraphArranger arranger;
+	/** Worker threads rendering the branches of the plan in parallel (null: serial rendering) */
+	private volatile RenderWorkerPool renderWorkers;
 	/** Map that maps Node's ID numbers to themselves */
 	private Map<Integer, Node> nodes;
 	/** Stack that keeps track of the order of additions to the Map */
@@ -49,6 +66,22 @@ public class SynthesizerAudioProcessor {
 	
 	/** Audio device that outputs the computed synthesizer signal */
 	private AudioDevice speakers;
+	/** Time the audio device takes to play back its internal buffer, in nanoseconds */
+	private long speakersLatency;
+	/** Time at which the last block was handed to the audio device */
+	private long lastWrite;
+	
+	/** Render time histogram, deadline misses and underruns of the audio thread */
+	private final EngineStats stats = new EngineStats();
+	
+	/** Thread that renders the audio independently from the LibGDX render loop */
+	private SynthesizerAudioThread audioThread;
+	
+	/** Lock-free queue of parameter changes that the audio thread applies at the start of each block */
+	private final ParameterChangeQueue parameterChanges = new ParameterChangeQueue();
+	
+	/** Algorithm whose parameters were changed while draining, but which hasn't been recalculated yet */
+	private AudioAlgorithm pendingRecalc;
 	
 	/** Private Singleton Constructor */
 	private SynthesizerAudioProcessor() { }
@@ -75,24 +108,257 @@ public class SynthesizerAudioProcessor {
 		nodes = new HashMap<Integer, Node>();
 		nodeStack = new Stack<Node>();
 		centerNode = new CenterNode();
+		centerNode.getModel().setPosition(centerNode.getOriginX(), centerNode.getOriginY());
 		
 		// Add center Node to the stage
 		stage.addActor(centerNode);
+		
+		// From now on, only the arranger touches the audio model of the Node graph
+		arranger = new GraphArranger(new AudioGraph(centerNode.getModel()));
+		arranger.start();
 
-		// Init audio device
-		speakers = Gdx.audio.newAudioDevice(Constants.SAMPLING_RATE, true);
+		// Init wavetables and audio device for the current engine configuration
+		WavetableBank.prepareTables();
+		this.openSpeakers();
+	}
+	
+	/**
+	 * Open the audio device with the sample rate of the current engine configuration
+	 */
+	private void openSpeakers() {
+		int rate = EngineConfig.get().getSampleRate();
+		speakers = Gdx.audio.newAudioDevice(rate, true);
+		speakersLatency = (long) speakers.getLatency() * 1000000000L / rate;
+		lastWrite = 0;
+	}
+	
+	/**
+	 * Start the audio thread. From now on, audio is computed independently
+	 * from the render cycle of the Synthesizer
+	 */
+	public void start() {
+		if (audioThread != null) return;
+		audioThread = new SynthesizerAudioThread(this);
+		audioThread.start();
+	}
+	
+	/**
+	 * Set the number of worker threads that render the independent input paths
+	 * of the Center node in parallel. With 0 threads, the audio thread renders
+	 * everything on its own
+	 * @param threads
+	 */
+	public void setRenderThreads(int threads) {
+		// Pause the audio thread, so that it doesn't render with a pool that is shutting down
+		boolean running = (audioThread != null);
+		this.stop();
+		
+		RenderWorkerPool old = renderWorkers;
+		renderWorkers = (threads > 0) ? new RenderWorkerPool(threads) : null;
+		if (old != null)
+			old.shutdown();
+		
+		if (running)
+			this.start();
+	}
+	
+	/**
+	 * Stop the audio thread after the block that is currently being rendered
+	 */
+	private void stop() {
+		if (audioThread != null) {
+			audioThread.shutdown();
+			try {
+				audioThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			audioThread = null;
+		}
+	}
+	
+	/**
+	 * Restart the engine with a new sample rate and block size.
+	 * The audio thread is stopped, every algorithm is reconfigured, the plan is recompiled
+	 * with blocks of the new size and the audio device is reopened
+	 * @param config
+	 */
+	public void restart(EngineConfig config) {
+		boolean running = (audioThread != null);
+		this.stop();
+		
+		// Wait for the pending arrangements, then adapt the algorithms and compile the plan with the new block size
+		arranger.flush();
+		EngineConfig.set(config);
+		WavetableBank.prepareTables();
+		for (AudioNode n : arranger.getSnapshot().getNodes())
+			n.reconfigure();
+		arranger.recompile();
+		arranger.flush();
+		
+		// Every plan compiled before has blocks of the old size: play the new one right away, without crossfading
+		arranger.reset();
+		
+		speakers.dispose();
+		this.openSpeakers();
+		stats.reset();
+		Utils.log("Audio engine restarted: " + config);
+		
+		if (running)
+			this.start();
+	}
+	
+	/**
+	 * Stop the audio thread and release the audio device
+	 */
+	public void dispose() {
+		this.stop();
+		this.setRenderThreads(0);
+		if (arranger != null) {
+			arranger.shutdown();
+			arranger = null;
+		}
+		if (speakers != null) {
+			speakers.dispose();
+			speakers = null;
+		}
 	}
 
 	/**
 	 * Process method.
-	 * The heart of the processing unit
+	 * The heart of the processing unit. It is called by the audio thread.
+	 * It picks up the latest snapshot of the Node graph at the start of a block (see GraphArranger.acquire()),
+	 * so it never waits for an arrangement running on the arranger thread.
+	 * The render time of each block is recorded in the EngineStats
 	 */
 	public void processAudio() {
-		// Start the recursive buffer filling process
-		float[] buffer = centerNode.fillBuffer();
+		long start = System.nanoTime();
+		GraphSnapshot snapshot = arranger.acquire();
+		
+		// Apply the parameter changes that arrived since the last block
+		if (parameterChanges.drain(this) > 0)
+			this.flushPendingRecalc();
+		
+		// Run the compiled plan of the Node graph
+		RenderWorkerPool workers = renderWorkers;
+		float[] buffer = (workers != null) ? workers.render(snapshot.getPlan()) : snapshot.getPlan().render();
+		long rendered = System.nanoTime();
+		stats.recordBlock(rendered - start);
+		
+		// The device was full after the last write. If more time has passed since then
+		// than it takes to play back its buffer, it has run dry in the meantime
+		if (lastWrite != 0 && rendered - lastWrite > speakersLatency)
+			stats.recordUnderrun();
 		
 		// Send the buffer to the audio device
 		speakers.writeSamples(buffer, 0, buffer.length);
+		lastWrite = System.nanoTime();
+	}
+
+	/**
+	 * Render the current Node graph to a WAV file as fast as possible, bypassing the audio device.
+	 * The audio thread is paused for the whole render, as both would advance the same algorithms
+	 * @param file		Output file
+	 * @param seconds	Duration of the rendered audio
+	 * @return			The achieved realtime factor
+	 * @throws IOException
+	 */
+	public float renderOffline(File file, float seconds) throws IOException {
+		boolean running = (audioThread != null);
+		this.stop();
+		
+		float factor;
+		try {
+			// Render the latest arrangement, without crossfading to it
+			arranger.flush();
+			arranger.reset();
+			if (parameterChanges.drain(this) > 0)
+				this.flushPendingRecalc();
+			factor = new OfflineRenderer(arranger.getSnapshot().getPlan()).render(file, seconds);
+		} finally {
+			if (running)
+				this.start();
+		}
+		Utils.log(String.format("Rendered %.1f s to %s at %.1fx realtime", seconds, file.getName(), factor));
+		return factor;
+	}
+
+	/**
+	 * Hand a parameter change over to the audio thread, which applies it at the start of the next block.
+	 * This must only be called from a single thread (the one processing NetMessages)
+	 * @param nodeId
+	 * @param paramId
+	 * @param value
+	 */
+	public void queueParameterChange(int nodeId, int paramId, float value) {
+		if (!parameterChanges.offer(nodeId, paramId, value))
+			Utils.log("Parameter change queue is full, dropping change of Node " + nodeId);
+	}
+	
+	/**
+	 * Start a note on the polyphonic generator of the Node with the given ID.
+	 * (Boxed arguments, so that it can be invoked by a METHOD NetMessage)
+	 * @param nodeId
+	 * @param note	Knob value of the note
+	 */
+	public void noteOn(Integer nodeId, Integer note) {
+		this.queueParameterChange(nodeId, PolyphonicGenerator.EVENT_NOTEON, note);
+	}
+	
+	/**
+	 * Stop a note on the polyphonic generator of the Node with the given ID.
+	 * (Boxed arguments, so that it can be invoked by a METHOD NetMessage)
+	 * @param nodeId
+	 * @param note	Knob value of the note
+	 */
+	public void noteOff(Integer nodeId, Integer note) {
+		this.queueParameterChange(nodeId, PolyphonicGenerator.EVENT_NOTEOFF, note);
+	}
+	
+	@Override
+	public void onParameterChange(int nodeId, int paramId, float value) {
+		AudioNode n = arranger.getSnapshot().get(nodeId);
+		if (n == null || n.getAlgorithm() == null) return;
+		
+		AudioAlgorithm algorithm = n.getAlgorithm();
+		
+		// Events such as note-on/-off are consumed by the algorithm itself
+		if (algorithm.handleEvent(paramId, value)) return;
+		
+		Property property = algorithm.getProperties().get(paramId);
+		if (property == null) return;
+		
+		// Consecutive changes to the same algorithm only need one recalculation
+		if (algorithm != pendingRecalc)
+			this.flushPendingRecalc();
+		property.setVal(value);
+		pendingRecalc = algorithm;
+	}
+	
+	/**
+	 * Recalculate the algorithm whose parameters were changed last
+	 */
+	private void flushPendingRecalc() {
+		if (pendingRecalc != null) {
+			pendingRecalc.recalc();
+			pendingRecalc = null;
+		}
+	}
+	
+	/**
+	 * Returns the deadline statistics of the audio thread
+	 * @return
+	 */
+	public EngineStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * Returns the snapshot of the last arrangement of the Node graph
+	 * @return
+	 */
+	public GraphSnapshot getSnapshot() {
+		return arranger.getSnapshot();
 	}
 	
 	/**
@@ -143,17 +409,15 @@ public class SynthesizerAudioProcessor {
 	 * @param n
 	 */
 	public void addNode(Node n) {
-		// Add it to the Stage as well!
+		// Add it to the Stage as well! (The arranger updates the Node structure)
 		nodes.put(n.getID(), n);
 		nodeStack.add(n);
+		arranger.add(n.getModel(), n.getOriginX(), n.getOriginY());
 		stage.addActor(n);
 		
 		// Send Nodes update
 		NetMessage sendnotesMsg = NetMessageFactory.create(Command.SENDNODES, Utils.makeNodePropertyStructure(nodes));
 		Synthesizer.broadcast(sendnotesMsg);
-		
-		// Update Node structure
-		this.arrangeAll();
 	}
 	
 	/**
@@ -182,56 +446,52 @@ public class SynthesizerAudioProcessor {
 	public void removeNode(Node n) {
 		// If the Node's ID is in the map, proceed
 		if (nodes.containsKey(n.getID())) {
-			// Remove it from the Node structures and the stage
+			// Remove it from the Node structures and the stage (the arranger updates the Node structure)
 			nodes.remove(n.getID());
 			if (nodeStack.contains(n)) nodeStack.remove(n);
+			arranger.remove(n.getModel());
 			stage.getRoot().removeActor(n);
-			
-			// Update Node structure
-			this.arrangeAll();
+			n.dispose();
 		}
 		
 		// Send Nodes update
 		NetMessage sendnotesMsg = NetMessageFactory.create(Command.SENDNODES, Utils.makeNodePropertyStructure(nodes));
 		Synthesizer.broadcast(sendnotesMsg);
-		
-		if (nodes.size() == 0)
-			centerNode.resetBuffer();
 	}
 	
 	/**
 	 * Removes all Nodes (but the CenterNode)
 	 */
 	public void removeAllNodes() {
+		// The arranger updates the Node structure
+		for (Node n : nodes.values())
+			n.dispose();
 		nodes.clear();
 		nodeStack.clear();
+		arranger.clear();
 		stage.getRoot().clear();
 		
 		// Send Nodes update
 		NetMessage sendnotesMsg = NetMessageFactory.create(Command.SENDNODES, Utils.makeNodePropertyStructure(nodes));
 		Synthesizer.broadcast(sendnotesMsg);
-		
-		centerNode.resetBuffer();
 	}
 
 	/**
-	 * Re-sets the 'arranged' flag of all nodes
+	 * Recursively re-arranges all nodes starting with the center node
+	 * and compiles the resulting graph into a new RenderPlan.
+	 * This happens on the arranger thread, the new plan is picked up by the next block
 	 */
-	public void clearArrangedStates() {
-		for (Node n : nodes.values()) {
-			n.setArranged(false);
-		}
+	public void arrangeAll() {
+		arranger.arrange();
 	}
+	
 	/**
-	 * Recursively re-arranges all nodes starting with the center node.
+	 * Re-arranges the nodes after the given node has been moved. Only if any connection
+	 * has changed, the arranger compiles the graph into a new RenderPlan
+	 * @param n
 	 */
-	public void arrangeAll() {
-		clearArrangedStates();
-		try {
-			centerNode.arrange();
-		} catch (NodeNotInitializedException e) {
-			e.printStackTrace();
-		}
+	public void moveNode(Node n) {
+		arranger.move(n.getModel(), n.getOriginX(), n.getOriginY());
 	}
 	
 	/**
@@ -0,0 +1,49 @@
+package de.hsb.ms.syn.desktop;
+
+/**
+ * Dedicated audio rendering thread of the Synthesizer.
+ * It repeatedly lets the SynthesizerAudioProcessor compute one block of audio
+ * and write it to the speakers. Since writing to the AudioDevice blocks until
+ * the device is ready for more data, this thread is paced by the audio hardware
+ * rather than the frame rate of the LibGDX render loop
+ * @author Marcel
+ *
+ */
+public class SynthesizerAudioThread extends Thread {
+
+	/** Audio processor that renders each block */
+	private SynthesizerAudioProcessor processor;
+
+	/** Flag if this thread should keep on rendering */
+	private volatile boolean running;
+
+	/**
+	 * Constructor
+	 * @param processor
+	 */
+	public SynthesizerAudioThread(SynthesizerAudioProcessor processor) {
+		super("thesisynth-audio");
+		this.processor = processor;
+		this.running = true;
+
+		// Audio must not be starved by the rendering thread
+		this.setPriority(Thread.MAX_PRIORITY);
+		this.setDaemon(true);
+	}
+
+	/**
+	 * Run implementation
+	 */
+	public void run() {
+		while (this.running) {
+			processor.processAudio();
+		}
+	}
+
+	/**
+	 * Stop this thread after the block that is currently being rendered
+	 */
+	public void shutdown() {
+		this.running = false;
+	}
+}
@@ -0,0 +1,82 @@
+package de.hsb.ms.syn.desktop;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.badlogic.gdx.Input.Keys;
+import com.badlogic.gdx.InputAdapter;
+
+import de.hsb.ms.syn.common.audio.engine.EngineConfig;
+import de.hsb.ms.syn.common.util.Utils;
+
+/**
+ * Keyboard shortcuts of the desktop synthesizer:
+ * F11 restarts the engine with the next block size of BLOCK_SIZES (see SynthesizerAudioProcessor.restart()),
+ * F12 renders the current Node graph to a WAV file (see SynthesizerAudioProcessor.renderOffline()).
+ * The file may be set with -Dthesisynth.render=..., otherwise it is numbered in the working directory
+ * @author Marcel
+ *
+ */
+public class SynthesizerKeyProcessor extends InputAdapter {
+
+	/** Duration of an offline render in seconds */
+	private static final float RENDER_SECONDS = 10f;
+	/** Block sizes that F11 cycles through, from low latency to low CPU load */
+	private static final int[] BLOCK_SIZES = { 256, 512, 1000, 2048 };
+
+	/** Audio processing unit */
+	private SynthesizerAudioProcessor processor;
+
+	/** Number of files rendered so far */
+	private int renders;
+
+	/**
+	 * Constructor
+	 * @param processor
+	 */
+	public SynthesizerKeyProcessor(SynthesizerAudioProcessor processor) {
+		this.processor = processor;
+	}
+
+	@Override
+	public boolean keyDown(int keycode) {
+		switch (keycode) {
+		case Keys.F11:
+			this.nextBlockSize();
+			return true;
+		case Keys.F12:
+			this.render();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Restart the engine with the next larger block size of BLOCK_SIZES
+	 * (the smallest one follows the largest one)
+	 */
+	private void nextBlockSize() {
+		EngineConfig config = EngineConfig.get();
+		int blockSize = BLOCK_SIZES[0];
+		for (int size : BLOCK_SIZES) {
+			if (size > config.getBlockSize()) {
+				blockSize = size;
+				break;
+			}
+		}
+		processor.restart(new EngineConfig(config.getSampleRate(), blockSize, config.getCrossfadeTime()));
+	}
+
+	/**
+	 * Render the current Node graph to the next WAV file
+	 */
+	private void render() {
+		File file = new File(System.getProperty("thesisynth.render", "thesisynth-" + (++renders) + ".wav"));
+		try {
+			processor.renderOffline(file, RENDER_SECONDS);
+		} catch (IOException e) {
+			Utils.log("Offline render to " + file + " failed: " + e.getMessage());
+		}
+	}
+}
@@ -6,14 +6,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import de.hsb.ms.syn.common.audio.AudioAlgorithm;
-import de.hsb.ms.syn.common.audio.Properties;
 import de.hsb.ms.syn.common.audio.Property;
 import de.hsb.ms.syn.common.net.NetMessage;
 import de.hsb.ms.syn.common.net.NetMessageFactory;
 import de.hsb.ms.syn.common.net.NetMessage.Command;
 import de.hsb.ms.syn.common.util.Utils;
-import de.hsb.ms.syn.common.vo.DraggableNode;
 import de.hsb.ms.syn.common.vo.Node;
 
 /**
@@ -98,14 +95,9 @@ public class SynthesizerNetworkProcessor {
 			for (int i = 0; i < objs.length; i++) {
 				Property property = (Property) objs[i];
 				int paramId = property.id();
-				// Retrieve the NodeProperties of the Node that belongs to this ID
-				DraggableNode node = (DraggableNode) processor.getNodes().get(nodeId);
-				AudioAlgorithm delegate = node.getAlgorithm();
-				Properties props = delegate.getProperties();
-				// Replace the given parameter with the also given new property for that parameter
-				props.put(paramId, property);
-				// Recalc this Node
-				delegate.recalc();
+				// Hand the new value over to the audio thread, which applies it to
+				// the Node's algorithm and recalcs it at the start of the next block
+				processor.queueParameterChange(nodeId, paramId, property.val());
 				
 				// The changed value has to be broadcast to all devices except the one that sent the ChangeParam msg in the first place
 				int senderConnection = mMessage.getSenderID();
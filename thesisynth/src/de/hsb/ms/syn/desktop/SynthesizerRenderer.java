@@ -1,6 +1,8 @@
 package de.hsb.ms.syn.desktop;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.badlogic.gdx.Gdx;
@@ -20,14 +22,17 @@ import com.badlogic.gdx.scenes.scene2d.utils.Align;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 
 import de.hsb.ms.syn.common.audio.Scale;
+import de.hsb.ms.syn.common.audio.WavetableBank;
 import de.hsb.ms.syn.common.audio.fx.LFO;
 import de.hsb.ms.syn.common.audio.fx.TapDelay;
+import de.hsb.ms.syn.common.audio.gen.PolyphonicGenerator;
 import de.hsb.ms.syn.common.audio.gen.Sawtooth;
 import de.hsb.ms.syn.common.audio.gen.Sinewave;
 import de.hsb.ms.syn.common.audio.gen.Square;
 import de.hsb.ms.syn.common.audio.gen.Triangle;
 import de.hsb.ms.syn.common.interfaces.Connection;
 import de.hsb.ms.syn.common.ui.ConnectionStatusIcon;
+import de.hsb.ms.syn.common.util.Assets;
 import de.hsb.ms.syn.common.util.Constants;
 import de.hsb.ms.syn.common.util.Utils;
 import de.hsb.ms.syn.common.vo.FxNode;
@@ -60,12 +65,20 @@ public class SynthesizerRenderer {
 	private Texture background;
 	private Texture shine;
 	
+	// Sprite names of the Node textures taken from the Assets for the toolbar
+	private List<String> toolbarTextures = new ArrayList<String>();
+	
 	// Stages: One for UI, one for Node graph
 	private NodesStage stage;
 	private Stage ui;
 	private ConnectionStatusIcon connectionStatus;
 	private Table deviceTable;
 	
+	// Overlay showing the audio engine's statistics, refreshed every STATS_INTERVAL seconds
+	private static final float STATS_INTERVAL = 0.5f;
+	private Label statsLabel;
+	private float statsTimer;
+	
 	private float width = 800;
 	private float height = 600;
 
@@ -126,48 +139,63 @@ public class SynthesizerRenderer {
 		ui.addActor(deviceTable);
 		rebuildDeviceTable();
 		
+		// Initialize the audio statistics overlay in the top right corner
+		Table statsTable = new Table();
+		statsTable.setFillParent(true);
+		statsTable.align(Align.top | Align.right);
+		statsTable.pad(20);
+		statsLabel = new Label("", skin);
+		statsTable.add(statsLabel);
+		ui.addActor(statsTable);
+		
 		// Initialize buttons
 		final ImageButton addButtonSq = new ImageButton(skin);
-		addButtonSq.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_square"))));
+		addButtonSq.add(new Image(this.toolbarTexture("node_square")));
 		addButtonSq.row();
 		addButtonSq.add(new Label("Square", skin));
 		
 		final ImageButton addButtonSw = new ImageButton(skin);
-		addButtonSw.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_sinewave"))));
+		addButtonSw.add(new Image(this.toolbarTexture("node_sinewave")));
 		addButtonSw.row();
 		addButtonSw.add(new Label("Sine", skin));
 		
 		final ImageButton addButtonSt = new ImageButton(skin);
-		addButtonSt.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_sawtooth"))));
+		addButtonSt.add(new Image(this.toolbarTexture("node_sawtooth")));
 		addButtonSt.row();
 		addButtonSt.add(new Label("Saw", skin));
 		
 		final ImageButton addButtonTr = new ImageButton(skin);
-		addButtonTr.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_triangle"))));
+		addButtonTr.add(new Image(this.toolbarTexture("node_triangle")));
 		addButtonTr.row();
 		addButtonTr.add(new Label("Tri", skin));
 		
+		final ImageButton addButtonPoly = new ImageButton(skin);
+		addButtonPoly.add(new Image(this.toolbarTexture("node_sinewave")));
+		addButtonPoly.row();
+		addButtonPoly.add(new Label("Poly", skin));
+		
 		final ImageButton addButtonLfoSw = new ImageButton(skin);
-		addButtonLfoSw.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_lfosine"))));
+		addButtonLfoSw.add(new Image(this.toolbarTexture("node_lfosine")));
 		addButtonLfoSw.row();
 		addButtonLfoSw.add(new Label("LFO Sine", skin));
 		
 		final ImageButton addButtonLfoSt = new ImageButton(skin);
-		addButtonLfoSt.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_lfosaw"))));
+		addButtonLfoSt.add(new Image(this.toolbarTexture("node_lfosaw")));
 		addButtonLfoSt.row();
 		addButtonLfoSt.add(new Label("LFO Saw", skin));
 		
 		final ImageButton addButtonDl = new ImageButton(skin);
-		addButtonDl.add(new Image(new Texture(String.format(Constants.PATH_NODE, "node_delay"))));
+		addButtonDl.add(new Image(this.toolbarTexture("node_delay")));
 		addButtonDl.row();
 		addButtonDl.add(new Label("Tap Delay", skin));
 		
 		// Setup UI
-		float segWidth = width / 7;
+		float segWidth = width / 8;
 		buttonTable.add(addButtonSq).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonSw).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonSt).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonTr).minWidth(segWidth).maxWidth(segWidth);
+		buttonTable.add(addButtonPoly).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonLfoSw).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonLfoSt).minWidth(segWidth).maxWidth(segWidth);
 		buttonTable.add(addButtonDl).minWidth(segWidth).maxWidth(segWidth);
@@ -204,6 +232,16 @@ public class SynthesizerRenderer {
 				SynthesizerAudioProcessor.getInstance().addNode(n);
 			}
 		});
+
+		// Notes are played on it with the noteOn/noteOff METHOD messages
+		addButtonPoly.addListener(new ChangeListener() {
+			public void changed(ChangeEvent ev, Actor ac) {
+				GenNode n = new GenNode(0, Utils.randomPosition());
+				n.setAlgorithm(new PolyphonicGenerator(new Scale(Scale.BASE_C, Scale.MODE_MAJ_OCTAVE), WavetableBank.WAVE_SINE));
+				SynthesizerAudioProcessor.getInstance().addNode(n);
+			}
+		});
+		
 		addButtonLfoSw.addListener(new ChangeListener() {
 			public void changed(ChangeEvent ev, Actor ac) {
 				FxNode n = new FxNode(Constants.LFO_INPUTS, Utils.randomPosition());
@@ -229,6 +267,33 @@ public class SynthesizerRenderer {
 		});
 	}
 	
+	/**
+	 * Returns the Node texture with the given sprite name for a toolbar button
+	 * (it is released again by dispose())
+	 * @param spriteName
+	 * @return
+	 */
+	private Texture toolbarTexture(String spriteName) {
+		toolbarTextures.add(spriteName);
+		return Assets.getNodeTexture(spriteName);
+	}
+	
+	/**
+	 * Release the graphical resources of the renderer.
+	 * The Singleton instance is created again by the next getInstance() call
+	 */
+	public void dispose() {
+		for (String spriteName : toolbarTextures)
+			Assets.releaseNodeTexture(spriteName);
+		toolbarTextures.clear();
+		background.dispose();
+		shine.dispose();
+		ui.dispose();
+		stage.dispose();
+		skin.dispose();
+		instance = null;
+	}
+	
 	/**
 	 * Singleton access method
 	 * @return
@@ -278,6 +343,13 @@ public class SynthesizerRenderer {
 			
 		}
 		
+		// Refresh the audio statistics overlay
+		statsTimer += Gdx.graphics.getDeltaTime();
+		if (statsTimer >= STATS_INTERVAL && statsLabel.isVisible()) {
+			statsTimer = 0;
+			statsLabel.setText(SynthesizerAudioProcessor.getInstance().getStats().toString());
+		}
+		
 		// Draw the UI on top
 		ui.draw();
 		
@@ -285,6 +357,14 @@ public class SynthesizerRenderer {
 		connectionStatus.draw(batch);
 	}
 	
+	/**
+	 * Show or hide the audio statistics overlay
+	 * @param visible
+	 */
+	public void setStatsVisible(boolean visible) {
+		statsLabel.setVisible(visible);
+	}
+	
 	/**
 	 * Get the Node graph Stage
 	 * @return